@@ -0,0 +1,106 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the single-pass formatter with the serializer round trip and regex passes it replaced.
+ * Both sides apply a green-text prefix and the default inline color token, then check for visible text.
+ *
+ * Run with {@code mvn -P benchmark test-compile exec:exec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormattingBenchmark {
+
+    private static final String[] INLINE_TEXTS = {"`"};
+    private static final String[] INLINE_CODES = {"§9"};
+
+    @Param({
+        "hello everyone, anyone up for a trade at spawn?",
+        ">green text with a `blue part and <BOLD>bold<RESET> words",
+        "&cred &lbold <GOLD>gold <UNKNOWN>tag and a much longer tail of plain text to format as well"
+    })
+    public String message;
+
+    @Benchmark
+    public String singlePass() {
+        String prefixCode = message.startsWith(">") ? "§a" : null;
+        return Utils.formatLegacyText(message, prefixCode, INLINE_TEXTS, INLINE_CODES, true);
+    }
+
+    @Benchmark
+    public String roundTrip() {
+        // Prefix and inline colors, as FormattingProfile applied them
+        StringBuilder applied = new StringBuilder(message.length() + 16);
+        if (message.startsWith(">")) {
+            applied.append("§a");
+        }
+        for (int i = 0; i < message.length(); ) {
+            if (message.startsWith(INLINE_TEXTS[0], i)) {
+                applied.append(INLINE_CODES[0]);
+                i += INLINE_TEXTS[0].length();
+            } else {
+                applied.append(message.charAt(i++));
+            }
+        }
+
+        String formatted = parseFormattingTags(applied.toString());
+        return stripColor(formatted).trim().isEmpty() ? null : formatted;
+    }
+
+    @Benchmark
+    public String stripColorSinglePass() {
+        return Utils.stripColor(message);
+    }
+
+    @Benchmark
+    public String stripColorRegex() {
+        return stripColor(message);
+    }
+
+    // The implementations before the single-pass formatter
+
+    private static String parseFormattingTags(String message) {
+        message = LegacyComponentSerializer.legacyAmpersand().serialize(
+            LegacyComponentSerializer.legacyAmpersand().deserialize(message));
+
+        Matcher matcher = Utils.FORMAT_PATTERN.matcher(message);
+        StringBuffer result = new StringBuffer();
+
+        while (matcher.find()) {
+            String tag = matcher.group(1);
+            if (Utils.isValidFormat(tag)) {
+                matcher.appendReplacement(result, Utils.getDirectFormatCode(tag));
+            } else if (Utils.isValidColor(tag)) {
+                matcher.appendReplacement(result, Utils.getDirectColorCode(tag));
+            } else {
+                matcher.appendReplacement(result, "");
+            }
+        }
+        matcher.appendTail(result);
+
+        return result.toString();
+    }
+
+    private static String stripColor(String text) {
+        return Pattern.compile("(?i)§[0-9A-FK-ORX]").matcher(text).replaceAll("");
+    }
+}
@@ -0,0 +1,102 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the bounded bit-parallel edit distance with the two-row Levenshtein DP it replaced,
+ * on 256-character messages. The bound is the one the default similarity threshold of 0.85 allows.
+ * A near copy needs the whole scan; an unrelated message can stop once the bound is out of reach.
+ *
+ * Run with {@code mvn -P benchmark test-compile exec:exec -Dbenchmark=EditDistance}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EditDistanceBenchmark {
+
+    private static final int LENGTH = 256;
+    private static final int MAX_DISTANCE = (int) Math.floor((1.0 - 0.85) * LENGTH);
+
+    @Param({"similar", "unrelated"})
+    public String pair;
+
+    private String a;
+    private String b;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        a = randomText(random, LENGTH);
+
+        if (pair.equals("similar")) {
+            // A handful of substitutions, as in spam that varies each copy slightly
+            char[] chars = a.toCharArray();
+            for (int i = 0; i < 10; i++) {
+                chars[random.nextInt(LENGTH)] = (char) ('a' + random.nextInt(26));
+            }
+            b = new String(chars);
+        } else {
+            b = randomText(random, LENGTH);
+        }
+    }
+
+    @Benchmark
+    public int bitParallel() {
+        return EditDistance.bounded(a, b, MAX_DISTANCE);
+    }
+
+    @Benchmark
+    public int dynamicProgramming() {
+        return levenshteinDistance(a, b);
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    // The implementation before the bit-parallel distance
+    private static int levenshteinDistance(String s1, String s2) {
+        int len1 = s1.length();
+        int len2 = s2.length();
+
+        int[] prev = new int[len2 + 1];
+        int[] curr = new int[len2 + 1];
+
+        for (int j = 0; j <= len2; j++) {
+            prev[j] = j;
+        }
+
+        for (int i = 1; i <= len1; i++) {
+            curr[0] = i;
+            for (int j = 1; j <= len2; j++) {
+                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+
+        return prev[len2];
+    }
+}
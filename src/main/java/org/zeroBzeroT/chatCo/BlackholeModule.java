@@ -1,93 +1,262 @@
 package org.zeroBzeroT.chatCo;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.net.InetSocketAddress;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public class BlackholeModule implements Listener {
 
     private static JavaPlugin plugin = null;
-    private static final Map<String, List<String>> playerSettings = new HashMap<>();
+    // Read on async chat threads for every message
+    private static final MuteTable mutes = new MuteTable();
+    private static MuteStore store = null;
+    // Flags of mutes still kept in config.yml by older versions; timed mutes carry "expires:<millis>"
     private static final String HIDDEN_SETTING = "hidden";
+    private static final String EXPIRES_SETTING = "expires:";
+    private static final TimingWheel<UUID> expiryWheel = new TimingWheel<>(1000, System.currentTimeMillis());
+    private static LinkageIndex linkage = null;
+    private static volatile boolean linkAlts = false;
 
     public BlackholeModule(JavaPlugin plugin) {
         BlackholeModule.plugin = plugin;
+        store = new MuteStore(plugin.getDataFolder(), mutes, plugin.getLogger());
         loadSettings();
+
+        linkage = new LinkageIndex(plugin.getDataFolder(),
+            plugin.getConfig().getInt("ChatCo.mutes.linkAddresses", 4),
+            TimeUnit.DAYS.toMillis(plugin.getConfig().getInt("ChatCo.mutes.linkMaxAgeDays", 30)),
+            plugin.getLogger());
+        linkage.load(System.currentTimeMillis());
+        linkAlts = plugin.getConfig().getBoolean("ChatCo.mutes.linkAlts", false);
+
+        // Timed mutes are lifted on the global region thread, like commands on a non-Folia server
+        Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> expireMutes(), 20, 20);
+        Bukkit.getAsyncScheduler().runAtFixedRate(plugin, task -> linkage.save(System.currentTimeMillis()), 5, 5, TimeUnit.MINUTES);
     }
 
-    public static void addPlayerToBlacklist(Player player, boolean hidden) {
-        String uuid = player.getUniqueId().toString();
-        List<String> settings = new ArrayList<>();
-        if (hidden) {
-            settings.add(HIDDEN_SETTING);
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        UUID playerId = player.getUniqueId();
+        InetSocketAddress address = player.getAddress();
+        long now = System.currentTimeMillis();
+        linkage.recordLogin(playerId, player.getName(), address == null ? null : address.getAddress(), now);
+
+        if (!linkAlts || mutes.get(playerId) != 0) {
+            return;
+        }
+
+        // Carry the mute of a linked account over, with the same flags and end
+        for (UUID linkedId : linkage.getLinkedAccounts(playerId, now)) {
+            long state = mutes.get(linkedId);
+            long expiresAt = MuteTable.expiresAt(state);
+            if (state != 0 && (expiresAt == 0 || expiresAt > now)) {
+                setMute(playerId, state);
+                plugin.getLogger().info("Muted " + player.getName() + " as an alt of " + linkage.getName(linkedId) + " (" + linkedId + ")");
+                return;
+            }
         }
-        playerSettings.put(uuid, settings);
+    }
+
+    /**
+     * Finds a player by name or UUID, including offline players that joined within the linkage age
+     * @param nameOrId An online player's name, a UUID, or the last name of an offline player
+     * @return The player's UUID, or null if no player matches
+     */
+    public static UUID resolvePlayer(String nameOrId) {
+        Player player = Bukkit.getPlayer(nameOrId);
+        if (player != null) {
+            return player.getUniqueId();
+        }
+        if (nameOrId.length() == 36) {
+            try {
+                return UUID.fromString(nameOrId);
+            } catch (IllegalArgumentException e) {
+                // Not a UUID, try the name
+            }
+        }
+        return linkage.findByName(nameOrId);
+    }
+
+    public static void addPlayerToBlacklist(Player player, boolean hidden) {
+        addPlayerToBlacklist(player, hidden, 0);
+    }
+
+    /**
+     * Mutes a player, for a limited time if an expiry is given
+     * @param player The player to mute
+     * @param hidden Whether the player's messages are hidden from the console
+     * @param expiresAt Wall-clock time in milliseconds when the mute ends, 0 for a permanent mute
+     */
+    public static void addPlayerToBlacklist(Player player, boolean hidden, long expiresAt) {
+        addToBlacklist(player.getUniqueId(), hidden, expiresAt);
+    }
 
-        // Immediately update config
-        plugin.getConfig().set("blacklist_settings." + uuid, settings);
-        plugin.saveConfig();
+    /**
+     * Mutes a player by UUID, who does not need to be online
+     * @see #addPlayerToBlacklist(Player, boolean, long)
+     */
+    public static void addToBlacklist(UUID playerId, boolean hidden, long expiresAt) {
+        setMute(playerId, MuteTable.pack(hidden, expiresAt));
     }
 
     public static void removePlayerFromBlacklist(Player player) {
-        String uuid = player.getUniqueId().toString();
-        playerSettings.remove(uuid);
+        removeFromBlacklist(player.getUniqueId());
+    }
 
-        // Ensure the entry is removed from config
-        plugin.getConfig().set("blacklist_settings." + uuid, null);
-        plugin.saveConfig();
+    /**
+     * Unmutes a player by UUID, who does not need to be online
+     * @return true if the player was muted
+     */
+    public static boolean removeFromBlacklist(UUID playerId) {
+        return store.remove(playerId);
     }
 
     public static boolean isPlayerBlacklisted(Player player) {
-        return playerSettings.containsKey(player.getUniqueId().toString());
+        return isBlacklisted(player.getUniqueId());
+    }
+
+    public static boolean isBlacklisted(UUID playerId) {
+        return mutes.get(playerId) != 0;
     }
 
     public static boolean isPlayerHidden(Player player) {
-        List<String> settings = playerSettings.get(player.getUniqueId().toString());
-        return settings != null && settings.contains(HIDDEN_SETTING);
+        return isHidden(player.getUniqueId());
     }
 
-    public static void setPlayerHidden(Player player, boolean hidden) {
-        String uuid = player.getUniqueId().toString();
-        List<String> settings = playerSettings.getOrDefault(uuid, new ArrayList<>());
+    public static boolean isHidden(UUID playerId) {
+        return MuteTable.isHidden(mutes.get(playerId));
+    }
+
+    /**
+     * Gets when a player's mute ends
+     * @param player The player
+     * @return Wall-clock time in milliseconds, or 0 if the player is not muted or muted permanently
+     */
+    public static long getMuteExpiry(Player player) {
+        return MuteTable.expiresAt(mutes.get(player.getUniqueId()));
+    }
 
-        if (hidden && !settings.contains(HIDDEN_SETTING)) {
-            settings.add(HIDDEN_SETTING);
-        } else if (!hidden) {
-            settings.remove(HIDDEN_SETTING);
+    /**
+     * Lifts the timed mutes that ran out. The wheel may hand back players whose mute was
+     * changed or lifted since, so the stored expiry is checked again.
+     */
+    private static void expireMutes() {
+        long now = System.currentTimeMillis();
+        for (UUID playerId : expiryWheel.advance(now)) {
+            long expiresAt = MuteTable.expiresAt(mutes.get(playerId));
+            if (expiresAt > 0 && expiresAt <= now) {
+                removeFromBlacklist(playerId);
+                plugin.getLogger().info("Mute of " + playerId + " expired.");
+            }
         }
+    }
+
+    public static void setPlayerHidden(Player player, boolean hidden) {
+        setHidden(player.getUniqueId(), hidden);
+    }
 
-        playerSettings.put(uuid, settings);
+    public static void setHidden(UUID playerId, boolean hidden) {
+        setMute(playerId, MuteTable.pack(hidden, MuteTable.expiresAt(mutes.get(playerId))));
+    }
 
-        // Immediately update config
-        plugin.getConfig().set("blacklist_settings." + uuid, settings);
-        plugin.saveConfig();
+    private static void setMute(UUID playerId, long state) {
+        store.put(playerId, state);
+        long expiresAt = MuteTable.expiresAt(state);
+        if (expiresAt > 0) {
+            expiryWheel.schedule(playerId, expiresAt);
+        }
+    }
+
+    private static long fromSettings(List<?> settings) {
+        boolean hidden = false;
+        long expiresAt = 0;
+        for (Object setting : settings) {
+            String text = String.valueOf(setting);
+            if (text.equals(HIDDEN_SETTING)) {
+                hidden = true;
+            } else if (text.startsWith(EXPIRES_SETTING)) {
+                try {
+                    expiresAt = Long.parseLong(text.substring(EXPIRES_SETTING.length()));
+                } catch (NumberFormatException e) {
+                    plugin.getLogger().warning("Ignoring invalid mute expiry: " + text);
+                }
+            }
+        }
+        return MuteTable.pack(hidden, expiresAt);
     }
 
+    /**
+     * Reloads the mutes from the mute store, and moves any mutes found in config.yml into it
+     */
     public static void reloadConfiguration() {
-        plugin.reloadConfig();
+        store.flushNow();
         loadSettings();
+        linkAlts = plugin.getConfig().getBoolean("ChatCo.mutes.linkAlts", false);
+    }
+
+    /**
+     * Writes the mute store and the account linkage to disk
+     */
+    public static void close() {
+        if (store != null) {
+            store.close();
+        }
+        if (linkage != null) {
+            linkage.save(System.currentTimeMillis());
+        }
     }
 
     private static void loadSettings() {
-        playerSettings.clear();
+        Map<UUID, Long> loaded = store.load();
+        int migrated = migrateConfig(loaded);
+        mutes.replaceAll(loaded);
+        // The old entries are only removed from config.yml once mutes.dat holds them
+        if (migrated > 0 && store.compact()) {
+            plugin.getConfig().set("blacklist_settings", null);
+            plugin.getConfig().set("blacklist", null);
+            plugin.saveConfig();
+            plugin.getLogger().info("Moved " + migrated + " mutes from config.yml to " + "mutes.dat");
+        }
+
+        // Mutes that ran out while the server was down are lifted on the first tick
+        expiryWheel.clear();
+        for (Map.Entry<UUID, Long> entry : loaded.entrySet()) {
+            long expiresAt = MuteTable.expiresAt(entry.getValue());
+            if (expiresAt > 0) {
+                expiryWheel.schedule(entry.getKey(), expiresAt);
+            }
+        }
+    }
+
+    /**
+     * Copies mutes from config.yml, in both the list and the old blacklist format, into the loaded mutes
+     * @return The number of mutes copied
+     */
+    private static int migrateConfig(Map<UUID, Long> loaded) {
+        int migrated = 0;
 
-        // Load from config
         if (plugin.getConfig().contains("blacklist_settings")) {
             ConfigurationSection section = plugin.getConfig().getConfigurationSection("blacklist_settings");
             if (section != null) {
                 Map<String, Object> loadedData = section.getValues(false);
                 for (Map.Entry<String, Object> entry : loadedData.entrySet()) {
-                    if (entry.getValue() instanceof List) {
-                        @SuppressWarnings("unchecked")
-                        List<String> settings = (List<String>) entry.getValue();
-                        playerSettings.put(entry.getKey(), settings);
+                    UUID playerId = parseUuid(entry.getKey());
+                    if (playerId != null && entry.getValue() instanceof List<?> settings) {
+                        loaded.put(playerId, fromSettings(settings));
+                        migrated++;
                     }
                 }
             } else {
@@ -95,19 +264,23 @@ public class BlackholeModule implements Listener {
             }
         }
 
-        // Check for entries in the old blacklist format and convert them
-        List<String> oldBlacklist = plugin.getConfig().getStringList("blacklist");
-        if (!oldBlacklist.isEmpty()) {
-            for (String uuid : oldBlacklist) {
-                if (!playerSettings.containsKey(uuid)) {
-                    playerSettings.put(uuid, new ArrayList<>());
-                    // Immediately save the conversion
-                    plugin.getConfig().set("blacklist_settings." + uuid, new ArrayList<>());
-                }
+        for (String uuid : plugin.getConfig().getStringList("blacklist")) {
+            UUID playerId = parseUuid(uuid);
+            if (playerId != null && !loaded.containsKey(playerId)) {
+                loaded.put(playerId, MuteTable.pack(false, 0));
+                migrated++;
             }
-            // Remove old format and save
-            plugin.getConfig().set("blacklist", null);
-            plugin.saveConfig();
+        }
+
+        return migrated;
+    }
+
+    private static UUID parseUuid(String text) {
+        try {
+            return UUID.fromString(text);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Ignoring mute with invalid UUID: " + text);
+            return null;
         }
     }
 }
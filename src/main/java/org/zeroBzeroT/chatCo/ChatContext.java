@@ -0,0 +1,83 @@
+package org.zeroBzeroT.chatCo;
+
+import org.bukkit.entity.Player;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+
+/**
+ * State of one public chat message while it passes through the {@link ChatPipeline}.
+ * The event is read once; stages share the player, the raw text and the current message text.
+ */
+public class ChatContext {
+    private final AsyncChatEvent event;
+    private final Player player;
+    private final String rawMessage;
+    private String message;
+    private boolean cancelled;
+    private Component processedMessage;
+
+    public ChatContext(AsyncChatEvent event) {
+        this.event = event;
+        this.player = event.getPlayer();
+        this.rawMessage = PlainTextComponentSerializer.plainText().serialize(event.message());
+        this.message = rawMessage;
+        this.cancelled = event.isCancelled();
+    }
+
+    public AsyncChatEvent getEvent() {
+        return event;
+    }
+
+    public Player getPlayer() {
+        return player;
+    }
+
+    /**
+     * Get the message as sent by the player
+     */
+    public String getRawMessage() {
+        return rawMessage;
+    }
+
+    /**
+     * Get the current message text, legacy formatted once the format stage ran
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Remember the event message as the pipeline left it, so later changes can be told apart
+     */
+    void markProcessed() {
+        processedMessage = event.message();
+    }
+
+    /**
+     * Pick up the final state of the event after the other plugins handled it
+     */
+    void refresh() {
+        cancelled = event.isCancelled();
+        if (processedMessage != null && event.message() != processedMessage) {
+            message = PlainTextComponentSerializer.plainText().serialize(event.message());
+        }
+    }
+
+    /**
+     * Cancel the chat event. Later stages are skipped unless they run for cancelled messages.
+     */
+    public void cancel() {
+        cancelled = true;
+        event.setCancelled(true);
+    }
+}
@@ -0,0 +1,188 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Console logger for chat lines that keeps the logger's locks and formatting off the chat threads.
+ * Lines go into a bounded lock-free ring buffer that a single background thread drains in batches.
+ * When the buffer is full, new lines are either dropped (and counted) or the caller waits for space.
+ */
+public class ChatLogger {
+    public enum OverflowPolicy {
+        DROP, BLOCK
+    }
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final Logger logger;
+    private final OverflowPolicy overflowPolicy;
+    private final int mask;
+    private final Entry[] entries;
+    // Per slot sequence: equals the write position when free, position + 1 when filled
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // only touched by the drain thread
+    private final LongAdder dropped = new LongAdder();
+    private final Thread drainThread;
+    private volatile boolean running = true;
+    private volatile boolean drainThreadParked;
+
+    public ChatLogger(Logger logger, int capacity, OverflowPolicy overflowPolicy) {
+        this.logger = logger;
+        this.overflowPolicy = overflowPolicy;
+
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.entries = new Entry[size];
+        this.sequences = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            entries[i] = new Entry();
+            sequences.set(i, i);
+        }
+
+        drainThread = new Thread(this::drainLoop, "ChatCoPlus Chat Logger");
+        drainThread.setDaemon(true);
+        drainThread.start();
+    }
+
+    /**
+     * Queue a line for the console
+     *
+     * @param level   - the log level
+     * @param message - the message, optionally with {0} style parameters
+     * @param params  - the message parameters
+     */
+    public void log(Level level, String message, Object... params) {
+        while (!offer(level, message, params)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                dropped.increment();
+                return;
+            }
+
+            // Backpressure: wait for the drain thread to free a slot
+            LockSupport.unpark(drainThread);
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Queue an INFO line for the console
+     */
+    public void info(String message) {
+        log(Level.INFO, message);
+    }
+
+    private boolean offer(Level level, String message, Object[] params) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Entry entry = entries[index];
+                    entry.level = level;
+                    entry.message = message;
+                    entry.params = params;
+                    sequences.set(index, position + 1);
+
+                    if (drainThreadParked) {
+                        LockSupport.unpark(drainThread);
+                    }
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false; // Buffer is full
+            }
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            int drained = drainBatch();
+
+            long lost = dropped.sumThenReset();
+            if (lost > 0) {
+                logger.log(Level.WARNING, "Console could not keep up with chat, dropped {0} log line(s)", lost);
+            }
+
+            if (drained == 0) {
+                if (!running) {
+                    return;
+                }
+
+                drainThreadParked = true;
+                if (isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                drainThreadParked = false;
+            }
+        }
+    }
+
+    private int drainBatch() {
+        int drained = 0;
+
+        while (drained < BATCH_SIZE) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+
+            Entry entry = entries[index];
+            Level level = entry.level;
+            String message = entry.message;
+            Object[] params = entry.params;
+            entry.message = null;
+            entry.params = null;
+            sequences.set(index, head + mask + 1);
+            head++;
+            drained++;
+
+            try {
+                if (params == null || params.length == 0) {
+                    logger.log(level, message);
+                } else {
+                    logger.log(level, message, params);
+                }
+            } catch (RuntimeException e) {
+                logger.log(Level.SEVERE, "Error writing chat log line", e);
+            }
+        }
+
+        return drained;
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    /**
+     * Write out all queued lines and stop the drain thread
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(drainThread);
+
+        try {
+            drainThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static class Entry {
+        Level level;
+        String message;
+        Object[] params;
+    }
+}
@@ -0,0 +1,159 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+import io.papermc.paper.event.player.AsyncChatEvent;
+
+/**
+ * Single listener for public chat that runs the registered stages in order.
+ * Stages are skipped once the message is cancelled, unless they were added to run for cancelled messages.
+ * Monitor stages run last, after every other plugin had its say, and see every message, cancelled or not.
+ * The time spent in every stage is recorded in nanoseconds.
+ */
+public class ChatPipeline implements Listener {
+    private final List<Stage> pending = new ArrayList<>();
+    private final List<Stage> pendingMonitors = new ArrayList<>();
+    private volatile Stage[] stages = new Stage[0];
+    private volatile Stage[] monitorStages = new Stage[0];
+
+    // Contexts of messages between the first and the monitor handler
+    private final Map<AsyncChatEvent, ChatContext> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Append a stage that is skipped for cancelled messages
+     *
+     * @param name  - the stage name shown in the timings
+     * @param stage - the stage
+     * @return this pipeline
+     */
+    public ChatPipeline addStage(String name, ChatStage stage) {
+        return addStage(name, stage, false);
+    }
+
+    /**
+     * Append a stage
+     *
+     * @param name              - the stage name shown in the timings
+     * @param stage             - the stage
+     * @param runsWhenCancelled - whether the stage also runs for cancelled messages
+     * @return this pipeline
+     */
+    public synchronized ChatPipeline addStage(String name, ChatStage stage, boolean runsWhenCancelled) {
+        pending.add(new Stage(name, stage, runsWhenCancelled));
+        stages = pending.toArray(new Stage[0]);
+        return this;
+    }
+
+    /**
+     * Append a stage that runs at the monitor priority, for cancelled messages too.
+     * Monitor stages must not change the message.
+     *
+     * @param name  - the stage name shown in the timings
+     * @param stage - the stage
+     * @return this pipeline
+     */
+    public synchronized ChatPipeline addMonitorStage(String name, ChatStage stage) {
+        pendingMonitors.add(new Stage(name, stage, true));
+        monitorStages = pendingMonitors.toArray(new Stage[0]);
+        return this;
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onAsyncChat(AsyncChatEvent event) {
+        ChatContext context = new ChatContext(event);
+        if (monitorStages.length > 0) {
+            inFlight.put(event, context);
+        }
+
+        for (Stage stage : stages) {
+            if (context.isCancelled() && !stage.runsWhenCancelled) {
+                continue;
+            }
+            run(stage, context);
+        }
+        context.markProcessed();
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = false)
+    public void onAsyncChatMonitor(AsyncChatEvent event) {
+        ChatContext context = inFlight.remove(event);
+        if (context == null) {
+            context = new ChatContext(event);
+        } else {
+            context.refresh();
+        }
+
+        for (Stage stage : monitorStages) {
+            run(stage, context);
+        }
+    }
+
+    private static void run(Stage stage, ChatContext context) {
+        long start = System.nanoTime();
+        try {
+            stage.stage.process(context);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            stage.totalNanos.add(elapsed);
+            stage.maxNanos.accumulate(elapsed);
+            stage.calls.increment();
+        }
+    }
+
+    /**
+     * Get a line per stage with its call count, average and maximum time
+     */
+    public List<String> getTimings() {
+        List<String> lines = new ArrayList<>();
+
+        for (Stage stage : allStages()) {
+            long calls = stage.calls.sum();
+            double average = calls == 0 ? 0 : stage.totalNanos.sum() / (double) calls / 1000.0;
+            double max = stage.maxNanos.get() / 1000.0;
+            lines.add(String.format("%s: %.1fµs avg, %.1fµs max, %d calls", stage.name, average, max, calls));
+        }
+
+        return lines;
+    }
+
+    /**
+     * Reset the recorded timings of all stages
+     */
+    public void resetTimings() {
+        for (Stage stage : allStages()) {
+            stage.totalNanos.reset();
+            stage.maxNanos.reset();
+            stage.calls.reset();
+        }
+    }
+
+    private List<Stage> allStages() {
+        List<Stage> all = new ArrayList<>(List.of(stages));
+        all.addAll(List.of(monitorStages));
+        return all;
+    }
+
+    private static class Stage {
+        final String name;
+        final ChatStage stage;
+        final boolean runsWhenCancelled;
+        final LongAdder totalNanos = new LongAdder();
+        final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        final LongAdder calls = new LongAdder();
+
+        Stage(String name, ChatStage stage, boolean runsWhenCancelled) {
+            this.name = name;
+            this.stage = stage;
+            this.runsWhenCancelled = runsWhenCancelled;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.zeroBzeroT.chatCo;
+
+/**
+ * A single step of the public chat pipeline.
+ */
+@FunctionalInterface
+public interface ChatStage {
+    /**
+     * Process a chat message. Stages cancel the message through {@link ChatContext#cancel()}.
+     *
+     * @param context - the message being processed
+     */
+    void process(ChatContext context);
+}
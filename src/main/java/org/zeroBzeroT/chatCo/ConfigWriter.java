@@ -0,0 +1,104 @@
+package org.zeroBzeroT.chatCo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * Writes config.yml at most once per interval, no matter how often it is saved.
+ * A save only marks the config dirty. The config is serialized on the global region thread, where
+ * commands change it, and the text is written by a background thread through a temp file and an
+ * atomic rename, so a crash never leaves a half-written config.
+ */
+final class ConfigWriter {
+
+    private static final long FLUSH_DELAY_TICKS = 40;
+
+    private final JavaPlugin plugin;
+    private final File file;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChatCoPlus Config Writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ConfigWriter(JavaPlugin plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "config.yml");
+    }
+
+    /**
+     * Marks the config dirty. The first call after a flush schedules the next one.
+     */
+    void markDirty() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getGlobalRegionScheduler().runDelayed(plugin, task -> flush(), FLUSH_DELAY_TICKS);
+        }
+    }
+
+    private void flush() {
+        // Already written by flushNow()
+        if (!flushScheduled.compareAndSet(true, false)) {
+            return;
+        }
+        String text = plugin.getConfig().saveToString();
+        try {
+            executor.execute(() -> write(text));
+        } catch (RejectedExecutionException e) {
+            write(text); // Closed
+        }
+    }
+
+    /**
+     * Writes pending changes now and waits until every write reached the disk,
+     * so the file can be read back, e.g. before a reload.
+     */
+    void flushNow() {
+        String text = flushScheduled.compareAndSet(true, false) ? plugin.getConfig().saveToString() : null;
+        try {
+            executor.submit(() -> {
+                if (text != null) {
+                    write(text);
+                }
+            }).get(5, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            if (text != null) {
+                write(text); // Closed
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            plugin.getLogger().warning("Failed to save config.yml: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes pending changes and stops the background thread.
+     */
+    void close() {
+        flushNow();
+        executor.shutdown();
+    }
+
+    private void write(String text) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.writeString(tempFile.toPath(), text, StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to save config.yml: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.entity.Player;
+import static org.zeroBzeroT.chatCo.Utils.getDirectColorCode;
+
+/**
+ * Compiled chat formatting permissions of a single player.
+ * Built once on join (and again on permission changes or reload) so the chat path
+ * does not have to walk the config and the permission tree for every message.
+ */
+public class FormattingProfile {
+    private static final FormattingProfile EMPTY = new FormattingProfile(new Token[0], new Token[0]);
+
+    // Chat prefix tokens, longest first. A null code means the prefix is configured but not permitted.
+    private final Token[] prefixes;
+    // Inline color tokens the player may use and their codes, longest first
+    private final String[] inlineTexts;
+    private final String[] inlineCodes;
+
+    private FormattingProfile(Token[] prefixes, Token[] inlineColors) {
+        this.prefixes = prefixes;
+        this.inlineTexts = new String[inlineColors.length];
+        this.inlineCodes = new String[inlineColors.length];
+
+        for (int i = 0; i < inlineColors.length; i++) {
+            inlineTexts[i] = inlineColors[i].text;
+            inlineCodes[i] = inlineColors[i].code;
+        }
+    }
+
+    /**
+     * Compile the formatting profile of a player
+     *
+     * @param config           - the plugin config holding the prefix and color tokens
+     * @param permissionConfig - the global permission overrides
+     * @param player           - the player to compile the profile for
+     * @return the compiled profile
+     */
+    public static FormattingProfile compile(FileConfiguration config, FileConfiguration permissionConfig, Player player) {
+        List<Token> prefixes = new ArrayList<>();
+        List<Token> inlineColors = new ArrayList<>();
+
+        for (String colorName : Utils.getNamedColors().keySet()) {
+            String prefix = config.getString("ChatCo.chatPrefixes." + colorName);
+            if (prefix != null && !prefix.isEmpty()) {
+                boolean allowed = permissionConfig.getBoolean("ChatCo.chatPrefixes." + colorName, false) || player.hasPermission("ChatCo.chatPrefixes." + colorName);
+                prefixes.add(new Token(prefix, allowed ? getDirectColorCode(colorName) : null));
+            }
+
+            String inlineColor = config.getString("ChatCo.chatColors." + colorName);
+            if (inlineColor != null && !inlineColor.isEmpty() && (permissionConfig.getBoolean("ChatCo.chatColors." + colorName, false) || player.hasPermission("ChatCo.chatColors." + colorName))) {
+                inlineColors.add(new Token(inlineColor, getDirectColorCode(colorName)));
+            }
+        }
+
+        if (prefixes.isEmpty() && inlineColors.isEmpty()) {
+            return EMPTY;
+        }
+
+        // Longest token first, so ">>" wins over ">"
+        Comparator<Token> longestFirst = Comparator.comparingInt((Token token) -> token.text.length()).reversed();
+        prefixes.sort(longestFirst);
+        inlineColors.sort(longestFirst);
+
+        return new FormattingProfile(prefixes.toArray(new Token[0]), inlineColors.toArray(new Token[0]));
+    }
+
+    /**
+     * Apply the prefix color, inline color tokens and formatting tags to a message
+     *
+     * @param message - the raw chat message
+     * @return the formatted message, or null if it has no visible text left
+     */
+    public String format(String message) {
+        String prefixCode = null;
+        for (Token prefix : prefixes) {
+            if (message.startsWith(prefix.text)) {
+                // The first matching prefix decides, even if it is not permitted
+                prefixCode = prefix.code;
+                break;
+            }
+        }
+
+        return Utils.formatLegacyText(message, prefixCode, inlineTexts, inlineCodes, true);
+    }
+
+    private record Token(String text, String code) {
+    }
+}
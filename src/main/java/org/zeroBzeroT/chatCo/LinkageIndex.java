@@ -0,0 +1,477 @@
+package org.zeroBzeroT.chatCo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Links accounts to the addresses they recently joined from, so mutes can find offline players
+ * by their last name and follow a player onto alts on the same address.
+ *
+ * Accounts are stored by id in primitive arrays, with their last few addresses, most recent first.
+ * Open-addressed indexes map UUIDs, names and addresses to ids; an address leads to its accounts
+ * through a linked list of edges. Every lookup and login costs O(1) for a bounded number of addresses.
+ * Accounts not seen within the maximum age are dropped whenever the indexes are rebuilt.
+ *
+ * IPv6 addresses are keyed by their /64 prefix, since privacy addresses rotate within it.
+ */
+final class LinkageIndex {
+
+    private static final int MAGIC = 0x43434c4b; // "CCLK"
+    private static final int VERSION = 1;
+    private static final long IPV4_TAG = 1L << 62;
+
+    private final int addressesPerAccount;
+    private final long maxAgeMs;
+    private final File file;
+    private final Logger logger;
+
+    // Accounts by id
+    private long[] highs = new long[0];
+    private long[] lows = new long[0];
+    private long[] lastSeen = new long[0];
+    private String[] names = new String[0];
+    // addressesPerAccount keys per account, most recent first; 0 marks a free entry
+    private long[] addresses = new long[0];
+    private int accounts;
+
+    // Open-addressed indexes holding id + 1; 0 marks a free slot
+    private int[] byPlayer = new int[0];
+    private int[] byName = new int[0];
+    private int byNameUsed;
+
+    // Address keys with the first edge + 1 of their list; -1 once the list ran empty, 0 marks a free slot
+    private long[] addressKeys = new long[0];
+    private int[] addressHeads = new int[0];
+    private int addressesUsed;
+    private int[] edgeAccounts = new int[0];
+    private int[] edgeNext = new int[0];
+    private int edges;
+    private int freeEdge = -1;
+
+    private boolean dirty;
+
+    LinkageIndex(File dataFolder, int addressesPerAccount, long maxAgeMs, Logger logger) {
+        this.addressesPerAccount = Math.max(1, addressesPerAccount);
+        this.maxAgeMs = maxAgeMs;
+        this.file = new File(dataFolder, "linkage.dat");
+        this.logger = logger;
+        reindex(16);
+    }
+
+    /**
+     * Records a login.
+     * @param playerId The player's UUID
+     * @param name The player's current name
+     * @param address The address the player joined from, or null if unknown
+     * @param now The current time in milliseconds
+     */
+    synchronized void recordLogin(UUID playerId, String name, InetAddress address, long now) {
+        int id = find(playerId);
+        if (id < 0) {
+            if (accounts == highs.length) {
+                reindex(accounts * 2);
+            }
+            id = accounts++;
+            highs[id] = playerId.getMostSignificantBits();
+            lows[id] = playerId.getLeastSignificantBits();
+            indexPlayer(id);
+        }
+
+        if (!name.equals(names[id])) {
+            names[id] = name;
+            indexName(id);
+        }
+        lastSeen[id] = now;
+        if (address != null) {
+            touchAddress(id, addressKey(address));
+        }
+        dirty = true;
+    }
+
+    /**
+     * Finds the account that last used a name.
+     * @return The account's UUID, or null if no known account used the name
+     */
+    synchronized UUID findByName(String name) {
+        int mask = byName.length - 1;
+        int best = -1;
+        for (int slot = nameHash(name) & mask; byName[slot] != 0; slot = (slot + 1) & mask) {
+            // Slots of renamed accounts stay until the next rebuild, so check the current name
+            int id = byName[slot] - 1;
+            if (name.equalsIgnoreCase(names[id]) && (best < 0 || lastSeen[id] > lastSeen[best])) {
+                best = id;
+            }
+        }
+        return best < 0 ? null : new UUID(highs[best], lows[best]);
+    }
+
+    /**
+     * Gets the last name of an account.
+     * @return The name, or null if the account is unknown
+     */
+    synchronized String getName(UUID playerId) {
+        int id = find(playerId);
+        return id < 0 ? null : names[id];
+    }
+
+    /**
+     * Gets the other accounts that joined from any of an account's recent addresses within the maximum age.
+     */
+    synchronized List<UUID> getLinkedAccounts(UUID playerId, long now) {
+        List<UUID> linked = new ArrayList<>();
+        int id = find(playerId);
+        if (id < 0) {
+            return linked;
+        }
+
+        int seen = 0;
+        int[] found = new int[8];
+        for (int i = 0; i < addressesPerAccount; i++) {
+            long key = addresses[id * addressesPerAccount + i];
+            if (key == 0) {
+                break;
+            }
+            for (int edge = addressHeads[addressSlot(key)] - 1; edge >= 0; edge = edgeNext[edge]) {
+                int other = edgeAccounts[edge];
+                if (other == id || now - lastSeen[other] >= maxAgeMs || contains(found, seen, other)) {
+                    continue;
+                }
+                if (seen == found.length) {
+                    found = Arrays.copyOf(found, seen * 2);
+                }
+                found[seen++] = other;
+                linked.add(new UUID(highs[other], lows[other]));
+            }
+        }
+        return linked;
+    }
+
+    /**
+     * Number of known accounts, including ones past the maximum age not dropped yet.
+     */
+    synchronized int size() {
+        return accounts;
+    }
+
+    /**
+     * Loads the index file, dropping accounts past the maximum age.
+     */
+    synchronized void load(long now) {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warning("Ignoring account linkage file with unknown format");
+                return;
+            }
+            int count = in.readInt();
+            int perAccount = in.readInt();
+            ensureCapacity(count);
+            for (int i = 0; i < count; i++) {
+                highs[accounts] = in.readLong();
+                lows[accounts] = in.readLong();
+                lastSeen[accounts] = in.readLong();
+                names[accounts] = in.readUTF();
+                for (int j = 0; j < perAccount; j++) {
+                    long key = in.readLong();
+                    // The number of addresses per account may have been lowered since
+                    if (j < addressesPerAccount) {
+                        addresses[accounts * addressesPerAccount + j] = key;
+                    }
+                }
+                if (now - lastSeen[accounts] < maxAgeMs) {
+                    accounts++;
+                } else {
+                    names[accounts] = null;
+                    Arrays.fill(addresses, accounts * addressesPerAccount, (accounts + 1) * addressesPerAccount, 0);
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to load account linkage: " + e.getMessage());
+        }
+        reindex(accounts);
+    }
+
+    /**
+     * Writes the index through a temp file and an atomic rename if it changed since the last save.
+     * Accounts past the maximum age are dropped first. Only the serialization holds the lock.
+     */
+    void save(long now) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dropExpired(now);
+            try {
+                DataOutputStream out = new DataOutputStream(buffer);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(accounts);
+                out.writeInt(addressesPerAccount);
+                for (int id = 0; id < accounts; id++) {
+                    out.writeLong(highs[id]);
+                    out.writeLong(lows[id]);
+                    out.writeLong(lastSeen[id]);
+                    out.writeUTF(names[id] == null ? "" : names[id]);
+                    for (int i = 0; i < addressesPerAccount; i++) {
+                        out.writeLong(addresses[id * addressesPerAccount + i]);
+                    }
+                }
+            } catch (IOException e) {
+                // Not thrown by an in-memory stream
+            }
+            dirty = false;
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), buffer.toByteArray());
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("Failed to save account linkage: " + e.getMessage());
+            synchronized (this) {
+                dirty = true;
+            }
+        }
+    }
+
+    private void dropExpired(long now) {
+        int kept = 0;
+        for (int id = 0; id < accounts; id++) {
+            if (now - lastSeen[id] >= maxAgeMs) {
+                continue;
+            }
+            if (kept != id) {
+                highs[kept] = highs[id];
+                lows[kept] = lows[id];
+                lastSeen[kept] = lastSeen[id];
+                names[kept] = names[id];
+                System.arraycopy(addresses, id * addressesPerAccount, addresses, kept * addressesPerAccount, addressesPerAccount);
+            }
+            kept++;
+        }
+        if (kept != accounts) {
+            Arrays.fill(names, kept, accounts, null);
+            Arrays.fill(addresses, kept * addressesPerAccount, accounts * addressesPerAccount, 0);
+            accounts = kept;
+            reindex(accounts);
+        }
+    }
+
+    /**
+     * Moves an address to the front of an account's list, adding it if it is new.
+     */
+    private void touchAddress(int id, long key) {
+        int base = id * addressesPerAccount;
+        int last = addressesPerAccount - 1;
+        int position = last;
+        for (int i = 0; i < addressesPerAccount; i++) {
+            if (addresses[base + i] == key) {
+                position = i;
+                break;
+            }
+        }
+
+        if (addresses[base + position] != key) {
+            // Rebuild before touching any list, since the rebuild reads the address arrays
+            if ((addressesUsed + 1) * 2 > addressKeys.length) {
+                reindex(highs.length);
+            }
+            // New address: the oldest one falls off the end
+            long dropped = addresses[base + last];
+            if (dropped != 0) {
+                unlink(dropped, id);
+            }
+            link(key, id);
+        }
+        System.arraycopy(addresses, base, addresses, base + 1, position);
+        addresses[base] = key;
+    }
+
+    // The caller makes sure the address table has room
+    private void link(long key, int id) {
+        int slot = addressSlot(key);
+        if (addressHeads[slot] == 0) {
+            addressKeys[slot] = key;
+            addressesUsed++;
+        }
+
+        int edge = freeEdge;
+        if (edge >= 0) {
+            freeEdge = edgeNext[edge];
+        } else {
+            if (edges == edgeAccounts.length) {
+                edgeAccounts = Arrays.copyOf(edgeAccounts, Math.max(16, edges * 2));
+                edgeNext = Arrays.copyOf(edgeNext, edgeAccounts.length);
+            }
+            edge = edges++;
+        }
+        edgeAccounts[edge] = id;
+        edgeNext[edge] = addressHeads[slot] - 1;
+        addressHeads[slot] = edge + 1;
+    }
+
+    private void unlink(long key, int id) {
+        int slot = addressSlot(key);
+        int previous = -1;
+        for (int edge = addressHeads[slot] - 1; edge >= 0; previous = edge, edge = edgeNext[edge]) {
+            if (edgeAccounts[edge] == id) {
+                if (previous < 0) {
+                    addressHeads[slot] = edgeNext[edge] < 0 ? -1 : edgeNext[edge] + 1;
+                } else {
+                    edgeNext[previous] = edgeNext[edge];
+                }
+                edgeNext[edge] = freeEdge;
+                freeEdge = edge;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the slot of an address key: the slot holding it, or the free slot where it belongs.
+     */
+    private int addressSlot(long key) {
+        int mask = addressKeys.length - 1;
+        int slot = (int) mix(key) & mask;
+        while (addressHeads[slot] != 0 && addressKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int find(UUID playerId) {
+        long high = playerId.getMostSignificantBits();
+        long low = playerId.getLeastSignificantBits();
+        int mask = byPlayer.length - 1;
+        for (int slot = (int) mix(high * 0x9e3779b97f4a7c15L ^ low) & mask; byPlayer[slot] != 0; slot = (slot + 1) & mask) {
+            int id = byPlayer[slot] - 1;
+            if (highs[id] == high && lows[id] == low) {
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private void indexPlayer(int id) {
+        int mask = byPlayer.length - 1;
+        int slot = (int) mix(highs[id] * 0x9e3779b97f4a7c15L ^ lows[id]) & mask;
+        while (byPlayer[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        byPlayer[slot] = id + 1;
+    }
+
+    private void indexName(int id) {
+        if ((byNameUsed + 1) * 2 > byName.length) {
+            reindex(highs.length); // Also drops the slots of old names
+            return;
+        }
+        int mask = byName.length - 1;
+        int slot = nameHash(names[id]) & mask;
+        while (byName[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        byName[slot] = id + 1;
+        byNameUsed++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > highs.length) {
+            highs = Arrays.copyOf(highs, capacity);
+            lows = Arrays.copyOf(lows, capacity);
+            lastSeen = Arrays.copyOf(lastSeen, capacity);
+            names = Arrays.copyOf(names, capacity);
+            addresses = Arrays.copyOf(addresses, capacity * addressesPerAccount);
+        }
+    }
+
+    /**
+     * Rebuilds all indexes from the account arrays, sized for the given number of accounts.
+     */
+    private void reindex(int capacity) {
+        ensureCapacity(Math.max(16, capacity));
+        int tableSize = Integer.highestOneBit(Math.max(16, highs.length) * 2 - 1) << 1;
+
+        byPlayer = new int[tableSize];
+        byName = new int[tableSize];
+        byNameUsed = 0;
+        addressKeys = new long[tableSize * addressesPerAccount];
+        addressHeads = new int[tableSize * addressesPerAccount];
+        addressesUsed = 0;
+        edges = 0;
+        freeEdge = -1;
+
+        for (int id = 0; id < accounts; id++) {
+            indexPlayer(id);
+            if (names[id] != null) {
+                indexName(id);
+            }
+            // Oldest first, so each address list ends up most recent first
+            for (int i = addressesPerAccount - 1; i >= 0; i--) {
+                long key = addresses[id * addressesPerAccount + i];
+                if (key != 0) {
+                    link(key, id);
+                }
+            }
+        }
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Key of an address: the tagged IPv4 address or the IPv6 /64 prefix, never 0.
+     */
+    private static long addressKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        long key = 0;
+        for (int i = 0; i < (address instanceof Inet4Address ? 4 : 8); i++) {
+            key = key << 8 | (bytes[i] & 0xFF);
+        }
+        if (address instanceof Inet4Address) {
+            return IPV4_TAG | key;
+        }
+        return key == 0 ? 1 : key;
+    }
+
+    private static int nameHash(String name) {
+        long hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            hash = hash * 31 + Character.toLowerCase(name.charAt(i));
+        }
+        return (int) mix(hash);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -6,20 +6,26 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 import org.bstats.bukkit.Metrics;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitRunnable;
 import org.jetbrains.annotations.NotNull;
 import org.zeroBzeroT.chatCo.guarddog.GuardDogModule;
+import org.zeroBzeroT.chatCo.guarddog.ReconnectCache;
+import org.zeroBzeroT.chatCo.guarddog.ShadowEvaluator;
+import org.zeroBzeroT.chatCo.guarddog.WaveDetector;
 import static org.zeroBzeroT.chatCo.Utils.componentFromLegacyText;
 import static org.zeroBzeroT.chatCo.Utils.saveStreamToFile;
+import static org.zeroBzeroT.chatCo.Utils.stripColor;
 
 public class Main extends JavaPlugin {
     public static File PermissionConfig;
@@ -29,13 +35,32 @@ public class Main extends JavaPlugin {
     private Announcer announcer;
     public Collection<ChatPlayer> playerList;
     private BlacklistFilter blacklistFilter;
+    private PublicChat publicChat;
+    private ChatPipeline chatPipeline;
+    private ChatLogger chatLogger;
+    private Whispers whispers;
     private GuardDogModule guardDog;
+    private ConfigWriter configWriter;
 
     @Override
     public void onDisable() {
         if (announcer != null) {
             announcer.disable();
         }
+        if (whispers != null) {
+            whispers.close();
+        }
+        if (guardDog != null) {
+            guardDog.close();
+        }
+        BlackholeModule.close();
+        if (configWriter != null) {
+            configWriter.close();
+            configWriter = null;
+        }
+        if (chatLogger != null) {
+            chatLogger.close();
+        }
         playerList.clear();
     }
 
@@ -48,6 +73,14 @@ public class Main extends JavaPlugin {
         }
     }
 
+    /**
+     * Get the asynchronous console logger for chat lines
+     * @return The chat logger instance
+     */
+    public ChatLogger getChatLogger() {
+        return chatLogger;
+    }
+
     /**
      * Get the blacklist filter
      * @return The blacklist filter instance
@@ -65,6 +98,16 @@ public class Main extends JavaPlugin {
         }
     }
 
+    /**
+     * Reload the public chat settings and the chat formatting permissions of all online players
+     */
+    public void reloadPublicChat() {
+        if (publicChat != null) {
+            publicChat.reloadSettings();
+            publicChat.reloadFormattingProfiles();
+        }
+    }
+
     /**
      * Reload the GuardDog anti-spam module
      */
@@ -82,24 +125,55 @@ public class Main extends JavaPlugin {
         return guardDog;
     }
 
+    /**
+     * Saves are coalesced by the config writer; see {@link ConfigWriter}
+     */
+    @Override
+    public void saveConfig() {
+        if (configWriter != null) {
+            configWriter.markDirty();
+        } else {
+            super.saveConfig();
+        }
+    }
+
+    /**
+     * Writes pending changes first, so reloading never discards them
+     */
+    @Override
+    public void reloadConfig() {
+        if (configWriter != null) {
+            configWriter.flushNow();
+        }
+        super.reloadConfig();
+    }
+
     @Override
     public void onEnable() {
+        configWriter = new ConfigWriter(this);
         playerList = Collections.synchronizedCollection(new ArrayList<>());
         getConfig().options().copyDefaults(true);
         getConfig().options().parseComments(true);
 
         saveResourceFiles();
-        toggleConfigValue(0);
+        // Only write config.yml back if an update added settings it does not have yet
+        if (hasMissingDefaults()) {
+            saveConfig();
+        }
+
+        chatLogger = new ChatLogger(getLogger(), getConfig().getInt("ChatCo.consoleLog.queueSize", 4096), getOverflowPolicy());
         
         // Initialize blacklist filter
         blacklistFilter = new BlacklistFilter(this);
 
         final PluginManager pm = getServer().getPluginManager();
-        pm.registerEvents(new PublicChat(this), this);
+        publicChat = new PublicChat(this);
+        pm.registerEvents(publicChat, this);
         pm.registerEvents(new BlackholeModule(this), this);
 
         if (getConfig().getBoolean("ChatCo.whisperChangesEnabled", true)) {
-            pm.registerEvents(new Whispers(this), this);
+            whispers = new Whispers(this);
+            pm.registerEvents(whispers, this);
         }
 
         if (getConfig().getBoolean("ChatCo.announcements.enabled", true)) {
@@ -114,9 +188,29 @@ public class Main extends JavaPlugin {
         // Initialize GuardDog anti-spam system
         guardDog = new GuardDogModule(this);
         guardDog.registerEvents();
+
+        // Public chat is handled by a single ordered pipeline
+        chatPipeline = new ChatPipeline()
+                .addStage("guard", guardDog::checkChat)
+                .addStage("unicode", publicChat::checkUnicode)
+                .addStage("blacklist", publicChat::checkBlacklist)
+                .addStage("format", publicChat::formatMessage)
+                .addStage("recipients", publicChat::filterRecipients)
+                .addMonitorStage("log", publicChat::logToConsole);
+        pm.registerEvents(chatPipeline, this);
     }
 
 
+    private ChatLogger.OverflowPolicy getOverflowPolicy() {
+        String policy = getConfig().getString("ChatCo.consoleLog.overflowPolicy", "DROP");
+        try {
+            return ChatLogger.OverflowPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            getLogger().warning(String.format("Unknown console log overflow policy: %s, using DROP", policy));
+            return ChatLogger.OverflowPolicy.DROP;
+        }
+    }
+
     @SuppressWarnings("ResultOfMethodCallIgnored")
     private void saveResourceFiles() {
         Main.dataFolder = getDataFolder();
@@ -273,7 +367,7 @@ public class Main extends JavaPlugin {
         if ((cmd.getName().equalsIgnoreCase("mute") || cmd.getName().equalsIgnoreCase("unmute")) && (sender.isOp() || sender instanceof ConsoleCommandSender)) {
             if (cmd.getName().equalsIgnoreCase("mute")) {
                 if (args.length == 0) {
-                    sender.sendMessage("Usage: /mute <player> or /mute reload");
+                    sender.sendMessage("Usage: /mute <player> [duration] or /mute reload");
                     return true;
                 }
 
@@ -284,33 +378,54 @@ public class Main extends JavaPlugin {
                 }
 
                 if (args.length == 1) {
-                    Player target = Bukkit.getPlayer(args[0]);
+                    UUID target = BlackholeModule.resolvePlayer(args[0]);
                     if (target == null) {
                         sender.sendMessage("Player not found.");
                         return true;
                     }
 
-                    if (BlackholeModule.isPlayerBlacklisted(target)) {
+                    if (BlackholeModule.isBlacklisted(target)) {
                         sender.sendMessage("Player is already muted.");
                     } else {
-                        BlackholeModule.addPlayerToBlacklist(target, false);
+                        BlackholeModule.addToBlacklist(target, false, 0);
                         sender.sendMessage("Muted player.");
                     }
                     return true;
                 }
+
+                if (args.length == 2) {
+                    UUID target = BlackholeModule.resolvePlayer(args[0]);
+                    if (target == null) {
+                        sender.sendMessage("Player not found.");
+                        return true;
+                    }
+
+                    long duration = Utils.parseDuration(args[1]);
+                    if (duration <= 0) {
+                        sender.sendMessage("Invalid duration. Use e.g. 30m, 12h, 7d or 1d12h.");
+                        return true;
+                    }
+
+                    // Muting again replaces the duration, so a timed mute can be extended or shortened
+                    BlackholeModule.addToBlacklist(target, BlackholeModule.isHidden(target), System.currentTimeMillis() + duration);
+                    sender.sendMessage("Muted player for " + Utils.formatDuration(duration) + ".");
+                    return true;
+                }
+
+                sender.sendMessage("Usage: /mute <player> [duration] or /mute reload");
+                return true;
             } else if (cmd.getName().equalsIgnoreCase("unmute")) {
                 if (args.length != 1) {
                     sender.sendMessage("Usage: /unmute <player>");
                     return true;
                 }
-                Player target = Bukkit.getPlayer(args[0]);
+                UUID target = BlackholeModule.resolvePlayer(args[0]);
                 if (target == null) {
                     sender.sendMessage("Player not found.");
                     return true;
                 }
 
-                if (BlackholeModule.isPlayerBlacklisted(target)) {
-                    BlackholeModule.removePlayerFromBlacklist(target);
+                if (BlackholeModule.removeFromBlacklist(target)) {
                     sender.sendMessage("Unmuted player.");
                 } else {
                     sender.sendMessage("Player is not muted.");
@@ -323,38 +438,137 @@ public class Main extends JavaPlugin {
                 return true;
             }
 
-            Player target = Bukkit.getPlayer(args[0]);
+            UUID target = BlackholeModule.resolvePlayer(args[0]);
             if (target == null) {
                 sender.sendMessage("Player not found.");
                 return true;
             }
 
-            if (!BlackholeModule.isPlayerBlacklisted(target)) {
+            if (!BlackholeModule.isBlacklisted(target)) {
                 sender.sendMessage("Player must be muted first.");
                 return true;
             }
 
-            BlackholeModule.setPlayerHidden(target, !BlackholeModule.isPlayerHidden(target));
-            sender.sendMessage("Player messages will " + (BlackholeModule.isPlayerHidden(target) ? "not" : "now") + " show in console.");
+            BlackholeModule.setHidden(target, !BlackholeModule.isHidden(target));
+            sender.sendMessage("Player messages will " + (BlackholeModule.isHidden(target) ? "not" : "now") + " show in console.");
             return true;
         }
 
         if (cmd.getName().equalsIgnoreCase("chatco")) {
             if (args.length > 0 && args[0].equalsIgnoreCase("reload")) {
                 reloadConfig();
-                saveConfig();
+                if (hasMissingDefaults()) {
+                    saveConfig();
+                }
                 reloadAnnouncer();
                 reloadBlacklistFilter();
+                reloadPublicChat();
                 BlackholeModule.reloadConfiguration();
                 reloadGuardDog();
                 sender.sendMessage("§aConfig reloaded successfully!");
                 sender.sendMessage("§7- Announcer settings");
                 sender.sendMessage("§7- Blacklist filter");
+                sender.sendMessage("§7- Chat settings and color permissions");
                 sender.sendMessage("§7- Blackhole/mute settings");
                 sender.sendMessage("§7- GuardDog anti-spam");
                 return true;
             }
             
+            if (args.length > 0 && args[0].equalsIgnoreCase("timings")) {
+                if (!sender.hasPermission("ChatCo.admin.timings")) {
+                    sender.sendMessage("You don't have permission to view chat timings");
+                    return true;
+                }
+
+                if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+                    chatPipeline.resetTimings();
+                    sender.sendMessage("§aChat pipeline timings reset.");
+                    return true;
+                }
+
+                sender.sendMessage("§eChat pipeline timings:");
+                for (String line : chatPipeline.getTimings()) {
+                    sender.sendMessage("§7- " + line);
+                }
+                return true;
+            }
+
+            if (args.length >= 2 && args[0].equalsIgnoreCase("guarddog") && args[1].equalsIgnoreCase("waves")) {
+                if (!sender.hasPermission("ChatCo.admin.guarddog")) {
+                    sender.sendMessage("You don't have permission to view GuardDog status");
+                    return true;
+                }
+
+                if (guardDog == null || !guardDog.isEnabled()) {
+                    sender.sendMessage("§cGuardDog is disabled.");
+                    return true;
+                }
+
+                List<WaveDetector.Wave> waves = guardDog.getWaveDetector().getTopWaves();
+                if (waves.isEmpty()) {
+                    sender.sendMessage("§aNo spam waves detected.");
+                    return true;
+                }
+
+                int maxSenders = guardDog.getWaveDetector().getMaxSenders();
+                sender.sendMessage("§eTop spam waves (blocked at " + maxSenders + " senders):");
+                for (WaveDetector.Wave wave : waves) {
+                    String status = wave.senders() >= maxSenders ? "§c[BLOCKED] " : "§7";
+                    sender.sendMessage(status + "~" + wave.senders() + " senders§7: " + stripColor(wave.sample()));
+                }
+                return true;
+            }
+
+            if (args.length >= 2 && args[0].equalsIgnoreCase("guarddog") && args[1].equalsIgnoreCase("stats")) {
+                if (!sender.hasPermission("ChatCo.admin.guarddog")) {
+                    sender.sendMessage("You don't have permission to view GuardDog status");
+                    return true;
+                }
+
+                if (guardDog == null || !guardDog.isEnabled()) {
+                    sender.sendMessage("§cGuardDog is disabled.");
+                    return true;
+                }
+
+                ReconnectCache reconnectCache = guardDog.getReconnectCache();
+                sender.sendMessage("§eGuardDog stats:");
+                sender.sendMessage("§7- Lockdown: " + (guardDog.isLockedDown() ? "§cactive" : "§ainactive"));
+                sender.sendMessage("§7- Rate limit address evictions: " + guardDog.getRateLimiter().getAddressEvictions());
+                sender.sendMessage("§7- Reconnect cache: " + reconnectCache.getPlayerEntries() + " players, "
+                    + reconnectCache.getAddressEntries() + " addresses, " + reconnectCache.getRestores() + " restores, "
+                    + reconnectCache.getEvictions() + " evictions, " + reconnectCache.getExpirations() + " expirations");
+                return true;
+            }
+
+            if (args.length >= 2 && args[0].equalsIgnoreCase("guarddog") && args[1].equalsIgnoreCase("shadow")) {
+                if (!sender.hasPermission("ChatCo.admin.guarddog")) {
+                    sender.sendMessage("You don't have permission to view GuardDog status");
+                    return true;
+                }
+
+                ShadowEvaluator shadow = guardDog != null && guardDog.isEnabled() ? guardDog.getShadowEvaluator() : null;
+                if (shadow == null) {
+                    sender.sendMessage("§cGuardDog shadow mode is disabled.");
+                    return true;
+                }
+
+                if (args.length > 2 && args[2].equalsIgnoreCase("reset")) {
+                    shadow.reset();
+                    sender.sendMessage("§aGuardDog shadow results reset.");
+                    return true;
+                }
+
+                sender.sendMessage("§eGuardDog shadow results (" + shadow.getDropped() + " messages skipped):");
+                for (ShadowEvaluator.Report report : shadow.getReports()) {
+                    sender.sendMessage("§6" + report.name() + "§7: " + report.wouldBlock() + "/" + report.evaluated() + " would block, "
+                        + report.extraBlocks() + " more and " + report.extraAllows() + " fewer than live " + report.byVerdict());
+                    for (ShadowEvaluator.Sample sample : report.samples()) {
+                        sender.sendMessage("§7- [" + sample.verdict() + "] " + sample.player() + ": " + stripColor(sample.message()));
+                    }
+                }
+                return true;
+            }
+
             if (args.length >= 2 && args[0].equalsIgnoreCase("blacklist")) {
                 // Check if the sender has the blacklist management permission
                 if (!sender.hasPermission("ChatCo.admin.blacklist")) {
@@ -513,16 +727,42 @@ public class Main extends JavaPlugin {
 
     private void toggleConfigValue(final int change) {
         switch (change) {
-            case 5 -> getConfig().set("ChatCo.whisperChangesEnabled", true);
-            case 6 -> getConfig().set("ChatCo.whisperChangesEnabled", false);
-            case 7 -> getConfig().set("ChatCo.announcementsEnabled", true);
-            case 8 -> getConfig().set("ChatCo.announcementsEnabled", false);
-            case 9 -> getConfig().set("ChatCo.whisperLog", true);
-            case 10 -> getConfig().set("ChatCo.whisperLog", false);
+            case 5 -> setConfigValue("ChatCo.whisperChangesEnabled", true);
+            case 6 -> setConfigValue("ChatCo.whisperChangesEnabled", false);
+            case 7 -> setConfigValue("ChatCo.announcementsEnabled", true);
+            case 8 -> setConfigValue("ChatCo.announcementsEnabled", false);
+            case 9 -> setConfigValue("ChatCo.whisperLog", true);
+            case 10 -> setConfigValue("ChatCo.whisperLog", false);
             default -> {
                 // Default case - no changes
             }
         }
-        saveConfig();
+    }
+
+    /**
+     * Set a config value and save the config, unless it already had that value
+     */
+    private void setConfigValue(String path, Object value) {
+        if (!value.equals(getConfig().get(path))) {
+            getConfig().set(path, value);
+            saveConfig();
+        }
+    }
+
+    /**
+     * Check whether config.yml lacks any of the default settings
+     */
+    private boolean hasMissingDefaults() {
+        ConfigurationSection defaults = getConfig().getDefaults();
+        if (defaults == null) {
+            return false;
+        }
+
+        for (String path : defaults.getKeys(true)) {
+            if (!getConfig().contains(path, true)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
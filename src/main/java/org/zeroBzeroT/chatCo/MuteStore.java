@@ -0,0 +1,269 @@
+package org.zeroBzeroT.chatCo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Persists the mute table in its own files instead of config.yml.
+ *
+ * Every change is appended to a binary log by a background thread, batched with whatever else
+ * arrives within half a second, so muting a whole bot wave costs one append. Once the log grows
+ * well past the size of the table, a snapshot of the table replaces it.
+ */
+final class MuteStore {
+
+    private static final int RECORD_BYTES = 24;
+    private static final int SNAPSHOT_MAGIC = 0x43434d54; // "CCMT"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final int MIN_COMPACT_RECORDS = 1024;
+
+    private final MuteTable table;
+    private final Logger logger;
+    private final File snapshotFile;
+    private final File logFile;
+
+    // Records waiting for the next log append, three longs each: high, low, state (0 for an unmute)
+    private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private int logRecords;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChatCoPlus Mute Store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    MuteStore(File dataFolder, MuteTable table, Logger logger) {
+        this.table = table;
+        this.logger = logger;
+        this.snapshotFile = new File(dataFolder, "mutes.dat");
+        this.logFile = new File(dataFolder, "mutes.log");
+    }
+
+    /**
+     * Sets the flags of a player in the table and queues the change for the log.
+     * Synchronized so the log sees changes in the same order as the table.
+     */
+    synchronized void put(UUID playerId, long state) {
+        table.put(playerId, state);
+        append(playerId, state);
+    }
+
+    /**
+     * Removes a player from the table and queues the removal for the log.
+     * @return true if the player was muted
+     */
+    synchronized boolean remove(UUID playerId) {
+        if (!table.remove(playerId)) {
+            return false;
+        }
+        append(playerId, 0);
+        return true;
+    }
+
+    private void append(UUID playerId, long state) {
+        pending.add(new long[] {playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), state});
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed, the final snapshot already covers the table
+            }
+        }
+    }
+
+    /**
+     * Reads the snapshot and replays the log on top of it.
+     * @return Packed flags by player
+     */
+    Map<UUID, Long> load() {
+        Map<UUID, Long> states = new HashMap<>();
+
+        if (snapshotFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                    logger.warning("Ignoring mute snapshot with unknown format");
+                } else {
+                    readRecords(in, states);
+                }
+            } catch (IOException e) {
+                logger.warning("Failed to load mute snapshot: " + e.getMessage());
+            }
+        }
+
+        if (logFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+                logRecords = readRecords(in, states);
+            } catch (IOException e) {
+                logger.warning("Failed to load mute log: " + e.getMessage());
+            }
+        }
+        return states;
+    }
+
+    // Reads records up to the end of the stream; a record cut off by a crash ends the read
+    private static int readRecords(DataInputStream in, Map<UUID, Long> states) throws IOException {
+        int records = 0;
+        try {
+            while (true) {
+                UUID playerId = new UUID(in.readLong(), in.readLong());
+                long state = in.readLong();
+                if (state == 0) {
+                    states.remove(playerId);
+                } else {
+                    states.put(playerId, state);
+                }
+                records++;
+            }
+        } catch (EOFException e) {
+            // End of records
+        }
+        return records;
+    }
+
+    /**
+     * Writes any queued changes now, then waits for them to reach the disk.
+     */
+    void flushNow() {
+        try {
+            executor.submit(this::flush).get(5, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed, the final snapshot already covers the table
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("Failed to flush mutes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the files with a snapshot of the current table and waits for it.
+     * Runs on the background thread, so it cannot interleave with a flush that already took records off the queue.
+     * @return true once the snapshot is on disk
+     */
+    boolean compact() {
+        try {
+            return executor.submit(this::snapshot).get(5, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed, nothing else writes the files anymore
+            return snapshot();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warning("Failed to compact mutes: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Writes a final snapshot and stops the background thread.
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    /**
+     * Appends all pending records to the log in one write.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 64);
+        try (FileChannel channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long[] record;
+            while ((record = pending.poll()) != null) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    write(channel, buffer);
+                }
+                buffer.putLong(record[0]).putLong(record[1]).putLong(record[2]);
+                logRecords++;
+            }
+            write(channel, buffer);
+        } catch (IOException e) {
+            logger.warning("Failed to append mutes: " + e.getMessage());
+        }
+
+        // Unmutes and re-mutes pile up in the log; start over once it is mostly stale
+        if (logRecords > Math.max(MIN_COMPACT_RECORDS, table.size() * 2)) {
+            snapshot();
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the table to a new snapshot and deletes the log.
+     * Synchronized with put and remove, so no change is queued between reading the table and clearing the queue.
+     */
+    private synchronized boolean snapshot() {
+        // Changes still pending are already in the table, so the snapshot covers them
+        pending.clear();
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                IOException[] failure = new IOException[1];
+                table.forEach((high, low, state) -> {
+                    try {
+                        out.writeLong(high);
+                        out.writeLong(low);
+                        out.writeLong(state);
+                    } catch (IOException e) {
+                        failure[0] = e;
+                    }
+                });
+                if (failure[0] != null) {
+                    throw failure[0];
+                }
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(logFile.toPath());
+            logRecords = 0;
+            return true;
+        } catch (IOException e) {
+            logger.warning("Failed to save mutes: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Set of muted players with their mute flags, keyed by the two longs of the UUID.
+ * The flags of a player are packed into one long: muted, hidden and the wall-clock end of a timed mute.
+ *
+ * Reads are lock-free and allocate nothing, since they run for every chat message.
+ * Mutes change rarely, so writers copy the table under a lock and publish the copy.
+ */
+final class MuteTable {
+
+    static final long MUTED = 1;
+    static final long HIDDEN = 2;
+    private static final int FLAG_BITS = 2;
+
+    // Linear probing; a state of 0 marks an empty slot, since every entry has the MUTED bit
+    private static final class Table {
+        final long[] highs;
+        final long[] lows;
+        final long[] states;
+        // Only changed before the table is published
+        int size;
+
+        Table(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            states = new long[capacity];
+        }
+    }
+
+    private volatile Table table = create(0);
+
+    /**
+     * Packs the flags of a mute.
+     * @param hidden Whether the player's messages are hidden from the console
+     * @param expiresAt Wall-clock time in milliseconds when the mute ends, 0 for a permanent mute
+     */
+    static long pack(boolean hidden, long expiresAt) {
+        return expiresAt << FLAG_BITS | (hidden ? HIDDEN : 0) | MUTED;
+    }
+
+    static boolean isHidden(long state) {
+        return (state & HIDDEN) != 0;
+    }
+
+    /**
+     * @return Wall-clock time in milliseconds when the mute ends, 0 for a permanent mute
+     */
+    static long expiresAt(long state) {
+        return state >>> FLAG_BITS;
+    }
+
+    /**
+     * Gets the packed flags of a player.
+     * @return The flags, or 0 if the player is not muted
+     */
+    long get(UUID playerId) {
+        Table current = table;
+        long high = playerId.getMostSignificantBits();
+        long low = playerId.getLeastSignificantBits();
+        int mask = current.states.length - 1;
+
+        for (int slot = (int) hash(high, low) & mask; ; slot = (slot + 1) & mask) {
+            long state = current.states[slot];
+            if (state == 0 || current.highs[slot] == high && current.lows[slot] == low) {
+                return state;
+            }
+        }
+    }
+
+    /**
+     * Sets the packed flags of a player, replacing any previous ones.
+     */
+    synchronized void put(UUID playerId, long state) {
+        Table current = table;
+        Table next = create(current.size + 1);
+        copy(current, next, playerId);
+        insert(next, playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(), state);
+        table = next;
+    }
+
+    /**
+     * Removes a player.
+     * @return true if the player was muted
+     */
+    synchronized boolean remove(UUID playerId) {
+        if (get(playerId) == 0) {
+            return false;
+        }
+        Table current = table;
+        Table next = create(current.size - 1);
+        copy(current, next, playerId);
+        table = next;
+        return true;
+    }
+
+    /**
+     * Replaces all entries at once.
+     * @param states Packed flags by player
+     */
+    synchronized void replaceAll(Map<UUID, Long> states) {
+        Table next = create(states.size());
+        for (Map.Entry<UUID, Long> entry : states.entrySet()) {
+            insert(next, entry.getKey().getMostSignificantBits(), entry.getKey().getLeastSignificantBits(), entry.getValue());
+        }
+        table = next;
+    }
+
+    /**
+     * Receives the entries of the table.
+     */
+    interface Visitor {
+        void accept(long high, long low, long state);
+    }
+
+    /**
+     * Visits all entries of the current table. Changes made meanwhile are not seen.
+     */
+    void forEach(Visitor visitor) {
+        Table current = table;
+        for (int slot = 0; slot < current.states.length; slot++) {
+            if (current.states[slot] != 0) {
+                visitor.accept(current.highs[slot], current.lows[slot], current.states[slot]);
+            }
+        }
+    }
+
+    /**
+     * Number of muted players.
+     */
+    int size() {
+        return table.size;
+    }
+
+    private static Table create(int entries) {
+        // At most half full, so probe chains stay short
+        int capacity = Integer.highestOneBit(Math.max(8, entries * 2 - 1)) << 1;
+        return new Table(capacity);
+    }
+
+    private static void copy(Table from, Table to, UUID skip) {
+        long skipHigh = skip.getMostSignificantBits();
+        long skipLow = skip.getLeastSignificantBits();
+        for (int slot = 0; slot < from.states.length; slot++) {
+            if (from.states[slot] != 0 && (from.highs[slot] != skipHigh || from.lows[slot] != skipLow)) {
+                insert(to, from.highs[slot], from.lows[slot], from.states[slot]);
+            }
+        }
+    }
+
+    // Only called on tables that are not published yet
+    private static void insert(Table table, long high, long low, long state) {
+        int mask = table.states.length - 1;
+        int slot = (int) hash(high, low) & mask;
+        while (table.states[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table.highs[slot] = high;
+        table.lows[slot] = low;
+        table.states[slot] = state;
+        table.size++;
+    }
+
+    private static long hash(long high, long low) {
+        return mix(high * 0x9e3779b97f4a7c15L ^ low);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -1,123 +1,150 @@
 package org.zeroBzeroT.chatCo;
 
-import java.io.File;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
+import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerKickEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import static org.zeroBzeroT.chatCo.Utils.containsUnicode;
-import static org.zeroBzeroT.chatCo.Utils.getDirectColorCode;
-import static org.zeroBzeroT.chatCo.Utils.parseFormattingTags;
 import static org.zeroBzeroT.chatCo.Utils.stripColor;
 
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.player.AsyncPlayerChatEvent;
+import io.papermc.paper.chat.ChatRenderer;
+import io.papermc.paper.event.player.AsyncChatEvent;
+import net.kyori.adventure.audience.Audience;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
 
 import java.util.Iterator;
 
 public class PublicChat implements Listener {
     public static Main plugin = null;
-    private final FileConfiguration permissionConfig;
+
+    // Vanilla "<name> message" layout. Rendered once per message by ChatRenderer.viewerUnaware
+    // and shared by every viewer, since ignoring and disabled viewers are removed from the viewer set.
+    private static final ChatRenderer.ViewerUnaware CHAT_FORMAT = (source, sourceDisplayName, message) ->
+            Component.translatable("chat.type.text", sourceDisplayName, message);
+
+    private FileConfiguration permissionConfig;
+    private final Map<UUID, FormattingProfile> profiles = new ConcurrentHashMap<>();
+    private volatile ChatSettings settings;
 
     public PublicChat(final Main plugin) {
         PublicChat.plugin = plugin;
-        File customConfig = Main.PermissionConfig;
-        permissionConfig = YamlConfiguration.loadConfiguration(customConfig);
+        permissionConfig = YamlConfiguration.loadConfiguration(Main.PermissionConfig);
+        settings = ChatSettings.load(plugin.getConfig());
         // Event registration handled by Main.java - don't register here to avoid duplicates
     }
 
-    public String replacePrefixColors(String message, final Player player) {
-        for (String colorName : Utils.getNamedColors().keySet()) {
-            String prefix = plugin.getConfig().getString("ChatCo.chatPrefixes." + colorName);
-            if (prefix != null && message.startsWith(prefix)) {
-                // check for global or player permission
-                if (permissionConfig.getBoolean("ChatCo.chatPrefixes." + colorName, false) || player.hasPermission("ChatCo.chatPrefixes." + colorName)) {
-                    message = getDirectColorCode(colorName) + message;
-                }
-
-                // break here since we found a prefix color code
-                break;
-            }
-        }
+    /**
+     * Get the compiled formatting profile of a player, compiling it if it is missing
+     */
+    public FormattingProfile getFormattingProfile(final Player player) {
+        return profiles.computeIfAbsent(player.getUniqueId(), uuid -> FormattingProfile.compile(plugin.getConfig(), permissionConfig, player));
+    }
 
-        return message;
+    /**
+     * Recompile the formatting profile of a player
+     */
+    public void refreshFormattingProfile(final Player player) {
+        profiles.put(player.getUniqueId(), FormattingProfile.compile(plugin.getConfig(), permissionConfig, player));
     }
 
-    public String replaceInlineColors(String message, final Player player) {
-        for (String colorName : Utils.getNamedColors().keySet()) {
-            String configColorCode = plugin.getConfig().getString("ChatCo.chatColors." + colorName);
-            if (configColorCode != null && (permissionConfig.getBoolean("ChatCo.chatColors." + colorName, false) || player.hasPermission("ChatCo.chatColors." + colorName))) {
-                message = message.replace(configColorCode, getDirectColorCode(colorName));
-            }
+    /**
+     * Reload the permission config and recompile the profiles of all online players
+     */
+    public void reloadFormattingProfiles() {
+        permissionConfig = YamlConfiguration.loadConfiguration(Main.PermissionConfig);
+        profiles.clear();
+
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            refreshFormattingProfile(player);
         }
+    }
 
-        return message;
+    /**
+     * Reload the cached chat settings
+     */
+    public void reloadSettings() {
+        settings = ChatSettings.load(plugin.getConfig());
     }
 
-    // ==================== BUKKIT/SPIGOT API (AsyncPlayerChatEvent) ====================
-    
-    @EventHandler(priority = EventPriority.LOW)
-    public void preProcessChat(AsyncPlayerChatEvent event) {
-        Player player = event.getPlayer();
-        String message = event.getMessage();
+    // ==================== CHAT PIPELINE STAGES ====================
 
-        // Check for unicode characters if the feature is enabled
-        if (PublicChat.plugin.getConfig().getBoolean("ChatCo.blockUnicodeText", false) && containsUnicode(message)) {
-            if (PublicChat.plugin.getConfig().getBoolean("ChatCo.debugUnicodeBlocking", false)) {
-                plugin.getLogger().info("Blocked unicode message from " + player.getName() + ": " + message);
+    /**
+     * Block messages with unicode characters if the feature is enabled
+     */
+    public void checkUnicode(ChatContext context) {
+        String message = context.getRawMessage();
+        if (settings.blockUnicodeText() && containsUnicode(message)) {
+            if (settings.debugUnicodeBlocking()) {
+                plugin.getLogger().info("Blocked unicode message from " + context.getPlayer().getName() + ": " + message);
             }
-            event.setMessage("[UNICODE] ***WAS NOT SENT*** - Blocked Message: " + message);
-            event.setCancelled(true);
-            return;
+            context.setMessage("[UNICODE] ***WAS NOT SENT*** - Blocked Message: " + message);
+            context.cancel();
         }
-        
-        // Check for blacklisted words
-        if (PublicChat.plugin.getBlacklistFilter().containsBlacklistedWord(message)) {
-            if (PublicChat.plugin.getConfig().getBoolean("ChatCo.debugBlacklistBlocking", false)) {
-                plugin.getLogger().info("Blocked blacklisted word from " + player.getName() + ": " + message);
+    }
+
+    /**
+     * Block messages with blacklisted words
+     */
+    public void checkBlacklist(ChatContext context) {
+        String message = context.getRawMessage();
+        if (plugin.getBlacklistFilter().containsBlacklistedWord(message)) {
+            if (settings.debugBlacklistBlocking()) {
+                plugin.getLogger().info("Blocked blacklisted word from " + context.getPlayer().getName() + ": " + message);
             }
-            event.setMessage("[BLACKLIST] ***WAS NOT SENT*** - Blocked Message: " + message);
-            event.setCancelled(true);
-            return;
+            context.setMessage("[BLACKLIST] ***WAS NOT SENT*** - Blocked Message: " + message);
+            context.cancel();
         }
+    }
+
+    /**
+     * Apply prefix colors, inline colors and formatting tags and set the renderer
+     */
+    public void formatMessage(ChatContext context) {
+        String legacyMessage = getFormattingProfile(context.getPlayer()).format(context.getRawMessage());
 
-        // Apply prefix colors
-        String legacyMessage = replacePrefixColors(message, player);
-        
-        // Apply inline colors
-        legacyMessage = replaceInlineColors(legacyMessage, player);
-        
-        // Parse any formatting tags
-        legacyMessage = parseFormattingTags(legacyMessage);
-
-        if (stripColor(legacyMessage).trim().isEmpty()) {
-            event.setCancelled(true);
+        if (legacyMessage == null) {
+            context.cancel();
             return;
         }
 
-        event.setMessage(legacyMessage);
+        context.setMessage(legacyMessage);
+
+        // Convert once; the renderer reuses the component for every viewer
+        AsyncChatEvent event = context.getEvent();
+        event.message(LegacyComponentSerializer.legacySection().deserialize(legacyMessage));
+        event.renderer(ChatRenderer.viewerUnaware(CHAT_FORMAT));
     }
-    
-    @EventHandler(priority = EventPriority.NORMAL)
-    public void filterChatRecipients(AsyncPlayerChatEvent event) {
-        Player player = event.getPlayer();
-        boolean chatDisabledGlobal = PublicChat.plugin.getConfig().getBoolean("ChatCo.chatDisabled", false);
-        if (chatDisabledGlobal) {
-            event.setCancelled(true);
+
+    /**
+     * Remove viewers that disabled chat or ignore the sender, and hide blackholed messages
+     */
+    public void filterRecipients(ChatContext context) {
+        if (settings.chatDisabled()) {
+            context.cancel();
             return;
         }
 
+        Player player = context.getPlayer();
+        AsyncChatEvent event = context.getEvent();
         boolean isBlackholed = BlackholeModule.isPlayerBlacklisted(player);
 
-        Iterator<Player> iterator = event.getRecipients().iterator();
+        Iterator<Audience> iterator = event.viewers().iterator();
         while (iterator.hasNext()) {
-            Player recipient = iterator.next();
-            if (recipient.equals(player)) {
+            if (!(iterator.next() instanceof Player recipient) || recipient.equals(player)) {
                 continue; // Sender always sees their own message
             }
 
@@ -127,51 +154,84 @@ public class PublicChat implements Listener {
                     iterator.remove();
                     continue;
                 }
-                if (chatPlayer.isIgnored(player.getName()) && PublicChat.plugin.getConfig().getBoolean("ChatCo.ignoresEnabled", true)) {
+                if (settings.ignoresEnabled() && chatPlayer.isIgnored(player.getName())) {
                     iterator.remove();
-                    continue;
                 }
             }
         }
 
         if (isBlackholed) {
-            // Only sender sees it; remove all other recipients
-            event.getRecipients().clear();
-            event.getRecipients().add(player);
+            // Only sender sees it; remove all other players but keep the console
+            event.viewers().removeIf(viewer -> viewer != player && !(viewer instanceof ConsoleCommandSender));
+            event.viewers().add(player);
             
             // Log blocked message if not hidden
             if (!BlackholeModule.isPlayerHidden(player)) {
-                plugin.getLogger().log(Level.INFO, "Blocked message from {0}: {1}", new Object[]{player.getName(), event.getMessage()});
+                plugin.getChatLogger().log(Level.INFO, "Blocked message from {0}: {1}", player.getName(), stripColor(context.getMessage()));
             }
         }
     }
-    
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void logChatToConsole(AsyncPlayerChatEvent event) {
+
+    /**
+     * Log the message to the console, including cancelled ones
+     */
+    public void logToConsole(ChatContext context) {
         try {
-            boolean chatToConsole = PublicChat.plugin.getConfig().getBoolean("ChatCo.chatToConsole", true);
-            if (!chatToConsole) {
+            if (!settings.chatToConsole()) {
                 return;
             }
             
-            Player player = event.getPlayer();
-            String displayName = player.getDisplayName();
-            String message = event.getMessage();
-            String fullMessage = "<" + stripColor(displayName) + "> " + message;
+            String displayName = PlainTextComponentSerializer.plainText().serialize(context.getPlayer().displayName());
+            String fullMessage = "<" + displayName + "> " + stripColor(context.getMessage());
             
-            plugin.getLogger().log(Level.INFO, "[CHAT] {0}", fullMessage);
+            plugin.getChatLogger().log(Level.INFO, "[CHAT] {0}", fullMessage);
         } catch (Exception e) {
-            plugin.getLogger().log(Level.SEVERE, "Error in logChatToConsole event handler", e);
+            plugin.getLogger().log(Level.SEVERE, "Error in logToConsole chat stage", e);
         }
     }
 
+    @EventHandler
+    public void onPlayerJoin(final PlayerJoinEvent e) {
+        refreshFormattingProfile(e.getPlayer());
+    }
+
+    // Permission plugins resend the command tree after a permission change
+    @EventHandler
+    public void onPlayerCommandSend(final PlayerCommandSendEvent e) {
+        refreshFormattingProfile(e.getPlayer());
+    }
+
+    // Permissions may be world specific
+    @EventHandler
+    public void onPlayerChangedWorld(final PlayerChangedWorldEvent e) {
+        refreshFormattingProfile(e.getPlayer());
+    }
+
     @EventHandler
     public void onPlayerQuit(final PlayerQuitEvent e) {
         plugin.remove(e.getPlayer());
+        profiles.remove(e.getPlayer().getUniqueId());
     }
 
     @EventHandler
     public void onPlayerKick(final PlayerKickEvent e) {
         plugin.remove(e.getPlayer());
+        profiles.remove(e.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Chat settings read once per reload instead of on every message
+     */
+    private record ChatSettings(boolean chatDisabled, boolean chatToConsole, boolean ignoresEnabled,
+                                boolean blockUnicodeText, boolean debugUnicodeBlocking, boolean debugBlacklistBlocking) {
+        static ChatSettings load(FileConfiguration config) {
+            return new ChatSettings(
+                    config.getBoolean("ChatCo.chatDisabled", false),
+                    config.getBoolean("ChatCo.chatToConsole", true),
+                    config.getBoolean("ChatCo.ignoresEnabled", true),
+                    config.getBoolean("ChatCo.blockUnicodeText", false),
+                    config.getBoolean("ChatCo.debugUnicodeBlocking", false),
+                    config.getBoolean("ChatCo.debugBlacklistBlocking", false));
+        }
     }
 }
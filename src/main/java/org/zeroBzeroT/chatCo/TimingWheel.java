@@ -0,0 +1,120 @@
+package org.zeroBzeroT.chatCo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel for wall-clock deadlines (e.g. timed mutes).
+ * Four levels of 64 slots each; level 0 slots are one tick wide, every higher level 64 times wider.
+ * A deadline goes into the level that covers its distance and drops down a level each time
+ * the wheel below wraps around. Scheduling and expiring cost O(1) per entry, no matter how
+ * many entries there are; a tick never scans entries that are not due.
+ *
+ * Entries cannot be cancelled; callers check on expiry whether the value is still current.
+ */
+final class TimingWheel<T> {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    // Deadlines further out are parked in the top level and placed again when it wraps
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private static final class Entry<T> {
+        final T value;
+        final long deadline;
+        Entry<T> next;
+
+        Entry(T value, long deadline) {
+            this.value = value;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMs;
+    @SuppressWarnings("unchecked")
+    private final Entry<T>[][] slots = (Entry<T>[][]) new Entry<?>[LEVELS][SLOTS];
+    // The last tick that was processed
+    private long tick;
+
+    TimingWheel(long tickMs, long nowMs) {
+        this.tickMs = tickMs;
+        this.tick = nowMs / tickMs;
+    }
+
+    /**
+     * Schedules a value. Deadlines in the past expire on the next tick.
+     * @param value The value to return on expiry
+     * @param deadlineMs The wall-clock deadline in milliseconds
+     */
+    synchronized void schedule(T value, long deadlineMs) {
+        long deadline = Math.max(tick + 1, (deadlineMs + tickMs - 1) / tickMs);
+        place(new Entry<>(value, deadline));
+    }
+
+    private void place(Entry<T> entry) {
+        long delta = entry.deadline - tick;
+        long slotTick = delta > MAX_DELTA ? tick + MAX_DELTA : entry.deadline;
+
+        int level = 0;
+        while (level < LEVELS - 1 && (slotTick - tick) >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (slotTick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+        entry.next = slots[level][slot];
+        slots[level][slot] = entry;
+    }
+
+    /**
+     * Advances the wheel to the current time.
+     * @param nowMs The current wall-clock time in milliseconds
+     * @return The values whose deadline passed
+     */
+    synchronized List<T> advance(long nowMs) {
+        List<T> expired = new ArrayList<>();
+        long target = nowMs / tickMs;
+
+        while (tick < target) {
+            tick++;
+
+            // Bring the next stretch of each higher level down once the level below wrapped around
+            for (int level = 1; level < LEVELS; level++) {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                int slot = (int) (tick >>> (SLOT_BITS * level)) & (SLOTS - 1);
+                Entry<T> entry = slots[level][slot];
+                slots[level][slot] = null;
+                while (entry != null) {
+                    Entry<T> next = entry.next;
+                    place(entry);
+                    entry = next;
+                }
+            }
+
+            int slot = (int) tick & (SLOTS - 1);
+            Entry<T> entry = slots[0][slot];
+            slots[0][slot] = null;
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                if (entry.deadline <= tick) {
+                    expired.add(entry.value);
+                } else {
+                    place(entry); // Parked beyond the wheel's range
+                }
+                entry = next;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    synchronized void clear() {
+        for (Entry<T>[] level : slots) {
+            Arrays.fill(level, null);
+        }
+    }
+}
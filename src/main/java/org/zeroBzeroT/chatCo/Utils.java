@@ -38,6 +38,14 @@ public class Utils {
     // Pattern for detecting formatting tags like <RED> or <BOLD>
     public static final Pattern FORMAT_PATTERN = Pattern.compile("<([A-Z_]+)>");
 
+    // Reusable per-thread output buffer of the legacy formatter
+    private static final ThreadLocal<StringBuilder> FORMAT_BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static final int MAX_FORMAT_BUFFER_CAPACITY = 4096;
+
+    // Tag names and their legacy codes, used by the formatter
+    private static final String[] TAG_NAMES;
+    private static final String[] TAG_CODES;
+
     static {
         // Standard Minecraft colors (using NamedTextColor constants)
         NAMED_COLORS.put("BLACK", NamedTextColor.BLACK);
@@ -56,6 +64,18 @@ public class Utils {
         NAMED_COLORS.put("LIGHT_PURPLE", NamedTextColor.LIGHT_PURPLE);
         NAMED_COLORS.put("YELLOW", NamedTextColor.YELLOW);
         NAMED_COLORS.put("WHITE", NamedTextColor.WHITE);
+
+        TAG_NAMES = new String[FORMAT_TAGS.size() + NAMED_COLORS.size()];
+        TAG_CODES = new String[TAG_NAMES.length];
+        int i = 0;
+        for (String format : FORMAT_TAGS) {
+            TAG_NAMES[i] = format;
+            TAG_CODES[i++] = getDirectFormatCode(format);
+        }
+        for (String color : NAMED_COLORS.keySet()) {
+            TAG_NAMES[i] = color;
+            TAG_CODES[i++] = getDirectColorCode(color);
+        }
     }
 
     /**
@@ -105,7 +125,24 @@ public class Utils {
      */
     public static String stripColor(String text) {
         if (text == null) return null;
-        return Pattern.compile("(?i)§[0-9A-FK-ORX]").matcher(text).replaceAll("");
+
+        int first = text.indexOf('§');
+        if (first < 0) return text;
+
+        StringBuilder result = new StringBuilder(text.length());
+        result.append(text, 0, first);
+        int length = text.length();
+
+        for (int i = first; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '§' && i + 1 < length && (isLegacyCode(text.charAt(i + 1)) || Character.toLowerCase(text.charAt(i + 1)) == 'x')) {
+                i++;
+                continue;
+            }
+            result.append(c);
+        }
+
+        return result.toString();
     }
 
     /**
@@ -205,31 +242,116 @@ public class Utils {
      * @return the message with formatting tags replaced with legacy color codes
      */
     public static String parseFormattingTags(String message) {
-        // First, handle legacy color codes
-        message = LegacyComponentSerializer.legacyAmpersand().serialize(
-            LegacyComponentSerializer.legacyAmpersand().deserialize(message));
-
-        java.util.regex.Matcher matcher = FORMAT_PATTERN.matcher(message);
-        StringBuffer result = new StringBuffer();
-
-        while (matcher.find()) {
-            String tag = matcher.group(1);
-            if (isValidFormat(tag)) {
-                // Handle formatting tags
-                matcher.appendReplacement(result, getDirectFormatCode(tag));
-            } else if (isValidColor(tag)) {
-                // Handle color tags
-                matcher.appendReplacement(result, getDirectColorCode(tag));
-            } else {
-                // Unknown tag - leave empty
-                matcher.appendReplacement(result, "");
+        return formatLegacyText(message, null, null, null, false);
+    }
+
+    /**
+     * Format a message in a single pass: legacy {@code &}/{@code §} codes are kept, inline color tokens and
+     * {@code <TAG>} tags are replaced with legacy color codes and unknown tags are dropped.
+     *
+     * @param message      - the message to format
+     * @param prefixCode   - a legacy code to put in front of the message, or null
+     * @param tokenTexts   - inline color tokens, checked in order, or null
+     * @param tokenCodes   - the legacy codes of the inline color tokens
+     * @param dropInvisible - return null if no visible text remains after formatting
+     * @return the formatted message, or null if dropInvisible is set and only codes and whitespace remain
+     */
+    public static String formatLegacyText(String message, String prefixCode, String[] tokenTexts, String[] tokenCodes, boolean dropInvisible) {
+        StringBuilder result = FORMAT_BUFFER.get();
+        if (result.capacity() > MAX_FORMAT_BUFFER_CAPACITY) {
+            result = new StringBuilder(256);
+            FORMAT_BUFFER.set(result);
+        }
+        result.setLength(0);
+
+        if (prefixCode != null) {
+            result.append(prefixCode);
+        }
+
+        boolean visible = false;
+        int length = message.length();
+        int i = 0;
+
+        scan:
+        while (i < length) {
+            char c = message.charAt(i);
+
+            // Inline color tokens
+            if (tokenTexts != null) {
+                for (int t = 0; t < tokenTexts.length; t++) {
+                    if (message.startsWith(tokenTexts[t], i)) {
+                        result.append(tokenCodes[t]);
+                        i += tokenTexts[t].length();
+                        continue scan;
+                    }
+                }
+            }
+
+            // Legacy color and format codes
+            if ((c == '&' || c == '§') && i + 1 < length && isLegacyCode(message.charAt(i + 1))) {
+                result.append(c).append(message.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+
+            // Formatting tags like <RED> or <BOLD>
+            if (c == '<') {
+                int end = i + 1;
+                while (end < length && isTagChar(message.charAt(end))) {
+                    end++;
+                }
+
+                if (end > i + 1 && end < length && message.charAt(end) == '>') {
+                    // Unknown tags are dropped
+                    String code = getTagCode(message, i + 1, end - i - 1);
+                    if (code != null) {
+                        result.append(code);
+                    }
+                    i = end + 1;
+                    continue;
+                }
             }
+
+            if (!visible && !Character.isWhitespace(c)) {
+                visible = true;
+            }
+
+            result.append(c);
+            i++;
+        }
+
+        if (dropInvisible && !visible) {
+            return null;
         }
-        matcher.appendTail(result);
 
         return result.toString();
     }
 
+    /**
+     * Check if a character is a legacy color or format code (0-9, a-f, k-o, r)
+     */
+    private static boolean isLegacyCode(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')
+                || (c >= 'k' && c <= 'o') || (c >= 'K' && c <= 'O') || c == 'r' || c == 'R';
+    }
+
+    private static boolean isTagChar(char c) {
+        return (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    /**
+     * Look up the legacy code of a tag name without allocating a substring
+     */
+    private static String getTagCode(String message, int offset, int length) {
+        for (int t = 0; t < TAG_NAMES.length; t++) {
+            if (TAG_NAMES[t].length() == length && message.regionMatches(offset, TAG_NAMES[t], 0, length)) {
+                return TAG_CODES[t];
+            }
+        }
+
+        return null;
+    }
+
     /**
      * Apply formatting to a component based on a format tag
      * 
@@ -280,6 +402,70 @@ public class Utils {
         return sdf.format(cal.getTime());
     }
 
+    /**
+     * Parses a duration like "30m", "24h", "7d" or "1d12h"
+     * @param text The duration, as numbers followed by s, m, h, d or w
+     * @return The duration in milliseconds, or -1 if the text is not a valid duration
+     */
+    public static long parseDuration(String text) {
+        long total = 0;
+        long number = -1;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (c >= '0' && c <= '9') {
+                number = (number < 0 ? 0 : number) * 10 + (c - '0');
+                if (number > Integer.MAX_VALUE) {
+                    return -1;
+                }
+                continue;
+            }
+
+            long unit = switch (c) {
+                case 's' -> 1000L;
+                case 'm' -> 60 * 1000L;
+                case 'h' -> 60 * 60 * 1000L;
+                case 'd' -> 24 * 60 * 60 * 1000L;
+                case 'w' -> 7 * 24 * 60 * 60 * 1000L;
+                default -> -1;
+            };
+            if (unit < 0 || number < 0) {
+                return -1;
+            }
+            total += number * unit;
+            number = -1;
+        }
+
+        // A trailing number without a unit is not allowed
+        return number < 0 && total > 0 ? total : -1;
+    }
+
+    /**
+     * Formats a duration in the largest two units, e.g. "6d 23h" or "45m 10s"
+     * @param millis The duration in milliseconds
+     * @return The formatted duration
+     */
+    public static String formatDuration(long millis) {
+        long seconds = Math.max(0, millis / 1000);
+        long[] sizes = {86400, 3600, 60, 1};
+        String[] units = {"d", "h", "m", "s"};
+
+        StringBuilder result = new StringBuilder();
+        int parts = 0;
+        for (int i = 0; i < sizes.length && parts < 2; i++) {
+            long value = seconds / sizes[i];
+            if (value > 0 || (parts > 0) || i == sizes.length - 1) {
+                if (parts > 0) {
+                    result.append(' ');
+                }
+                result.append(value).append(units[i]);
+                seconds -= value * sizes[i];
+                parts++;
+            }
+        }
+        return result.toString();
+    }
+
     /**
      * Checks if a string contains any non-ASCII characters (unicode)
      * @param text The text to check
@@ -7,6 +7,13 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -16,6 +23,8 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.zeroBzeroT.chatCo.guarddog.GuardDogModule;
 import static org.zeroBzeroT.chatCo.Utils.componentFromLegacyText;
 import static org.zeroBzeroT.chatCo.Utils.containsUnicode;
 import static org.zeroBzeroT.chatCo.Utils.getDirectColorCode;
@@ -30,10 +39,37 @@ import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 public class Whispers implements Listener {
     private final Main plugin;
 
+    private static final int QUEUE_SIZE = 1024;
+    private static final int MAX_QUEUED_PER_SENDER = 8;
+
+    // GuardDog checks, formatting and delivery run here instead of on the main thread.
+    // A single thread keeps whispers in the order they were sent. Each sender may only have a few
+    // whispers waiting, so a /msg flood only delays the flooder; whispers that do not fit are
+    // refused right away and the sender is told.
+    private final Map<UUID, AtomicInteger> queuedBySender = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor whisperExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+        Thread thread = new Thread(runnable, "ChatCoPlus Whispers");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public Whispers(Main plugin) {
         this.plugin = plugin;
     }
 
+    /**
+     * Stop the whisper thread after sending the queued whispers
+     */
+    public void close() {
+        whisperExecutor.shutdown();
+
+        try {
+            whisperExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private static final Map<String, String> COLOR_PLACEHOLDER_MAP = new HashMap<>();
 
     static {
@@ -72,6 +108,51 @@ public class Whispers implements Listener {
         return LegacyComponentSerializer.legacySection().deserialize(legacyMessage);
     }
 
+    /**
+     * Queue a whisper: run the GuardDog checks and deliver it if they pass
+     *
+     * @param rememberReceiver - whether a delivered whisper becomes the target of /last
+     */
+    private void queuePrivateMessage(Player sender, Player receiver, String message, boolean rememberReceiver) {
+        AtomicInteger queued = queuedBySender.computeIfAbsent(sender.getUniqueId(), k -> new AtomicInteger());
+        if (queued.incrementAndGet() > MAX_QUEUED_PER_SENDER) {
+            queued.decrementAndGet();
+            sender.sendMessage(componentFromLegacyText("&cYou are sending whispers too fast, try again."));
+            return;
+        }
+
+        try {
+            whisperExecutor.execute(() -> deliverQueued(sender, receiver, message, rememberReceiver, queued));
+        } catch (RejectedExecutionException e) {
+            queued.decrementAndGet();
+            sender.sendMessage(componentFromLegacyText("&cServer is busy, try again."));
+        }
+    }
+
+    // Runs on the whisper thread; the whisper no longer counts as waiting
+    private void deliverQueued(Player sender, Player receiver, String message, boolean rememberReceiver, AtomicInteger queued) {
+        queued.decrementAndGet();
+        try {
+            GuardDogModule guardDog = plugin.getGuardDog();
+            if (guardDog != null && guardDog.evaluate(sender, message, receiver) != GuardDogModule.Verdict.ALLOW) {
+                return;
+            }
+
+            ChatPlayer chatPlayer = rememberReceiver ? plugin.getChatPlayer(sender) : null;
+            if (chatPlayer != null) {
+                chatPlayer.setLastReceiver(receiver);
+            }
+            sendPrivateMessage(sender, receiver, message);
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.SEVERE, "Error sending whisper", e);
+        }
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        queuedBySender.remove(event.getPlayer().getUniqueId());
+    }
+
     private void sendPrivateMessage(Player sender, Player receiver, String message) {
         // Double-check for blacklisted words and unicode as a safety measure
         if (plugin.getConfig().getBoolean("ChatCo.blockUnicodeText", false) && containsUnicode(message)) {
@@ -112,8 +193,8 @@ public class Whispers implements Listener {
 
         boolean isBlackholed = BlackholeModule.isPlayerBlacklisted(sender);
         if (isBlackholed && !BlackholeModule.isPlayerHidden(sender)) {
-            plugin.getLogger().log(Level.INFO, "Blocked message from {0}: {1}",
-                    new Object[]{sender.getName(), stripColor(LegacyComponentSerializer.legacySection().serialize(senderMessage))});
+            plugin.getChatLogger().log(Level.INFO, "Blocked message from {0}: {1}",
+                    sender.getName(), stripColor(LegacyComponentSerializer.legacySection().serialize(senderMessage)));
         }
 
         sender.sendMessage(senderMessage);
@@ -144,8 +225,8 @@ public class Whispers implements Listener {
             boolean isHidden = BlackholeModule.isPlayerHidden(sender);
             
             if (whisperMonitoring && !isHidden) {
-                plugin.getLogger().log(Level.INFO, "[WHISPER] {0} -> {1}: {2}", 
-                    new Object[]{sender.getName(), receiver.getName(), stripColor(logText)});
+                plugin.getChatLogger().log(Level.INFO, "[WHISPER] {0} -> {1}: {2}", 
+                    sender.getName(), receiver.getName(), stripColor(logText));
             }
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Error logging whisper", e);
@@ -205,7 +286,7 @@ public class Whispers implements Listener {
                     return;
                 }
                 
-                sendPrivateMessage(sender, target, whisperMessage);
+                queuePrivateMessage(sender, target, whisperMessage, false);
             }
 
             event.setCancelled(true);
@@ -245,7 +326,7 @@ public class Whispers implements Listener {
                     return;
                 }
                 
-                sendPrivateMessage(sender, target, whisperMessage);
+                queuePrivateMessage(sender, target, whisperMessage, false);
             }
 
             event.setCancelled(true);
@@ -285,9 +366,8 @@ public class Whispers implements Listener {
                 return;
             }
             
-            sendPrivateMessage(sender, target, whisperMessage);
+            queuePrivateMessage(sender, target, whisperMessage, true);
             event.setCancelled(true);
-            ((Main) plugin).getChatPlayer(sender).setLastReceiver(target);
         }
         // If not a whisper command, do not cancel
     }
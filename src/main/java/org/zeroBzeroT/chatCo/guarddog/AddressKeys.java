@@ -0,0 +1,83 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+
+/**
+ * Packs IP addresses and network prefixes into primitive long keys.
+ * IPv4 keys carry a tag bit so they never collide with IPv6 prefixes.
+ * Full addresses are also available as two longs holding their 128-bit IPv6 form.
+ */
+final class AddressKeys {
+
+    private static final long IPV4_TAG = 1L << 62;
+
+    private AddressKeys() {
+    }
+
+    /**
+     * Key of a single address. IPv6 addresses are folded into 64 bits.
+     */
+    static long addressKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return IPV4_TAG | readInt(bytes);
+        }
+        long high = readLong(bytes, 0);
+        long low = readLong(bytes, 8);
+        return high * 0x9e3779b97f4a7c15L ^ low;
+    }
+
+    /**
+     * Key of the network of an address: the IPv4 /24 or the IPv6 /48 prefix.
+     */
+    static long networkKey(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            return IPV4_TAG | (readInt(bytes) >>> 8);
+        }
+        return readLong(bytes, 0) >>> 16;
+    }
+
+    /**
+     * High 64 bits of the IPv6 form of an address. IPv4 addresses are IPv4-mapped (::ffff:a.b.c.d).
+     * @param bytes The raw address, 4 or 16 bytes
+     */
+    static long high(byte[] bytes) {
+        return bytes.length == 4 ? 0 : readLong(bytes, 0);
+    }
+
+    /**
+     * Low 64 bits of the IPv6 form of an address. IPv4 addresses are IPv4-mapped (::ffff:a.b.c.d).
+     * @param bytes The raw address, 4 or 16 bytes
+     */
+    static long low(byte[] bytes) {
+        return bytes.length == 4 ? 0xffff00000000L | readInt(bytes) : readLong(bytes, 8);
+    }
+
+    /**
+     * High 64 bits of a 128-bit address with all but the first {@code bits} bits cleared.
+     */
+    static long maskHigh(long high, int bits) {
+        return bits >= 64 ? high : bits <= 0 ? 0 : high & (-1L << (64 - bits));
+    }
+
+    /**
+     * Low 64 bits of a 128-bit address with all but the first {@code bits} bits cleared.
+     */
+    static long maskLow(long low, int bits) {
+        return bits >= 128 ? low : bits <= 64 ? 0 : low & (-1L << (128 - bits));
+    }
+
+    private static long readInt(byte[] bytes) {
+        return ((bytes[0] & 0xffL) << 24) | ((bytes[1] & 0xffL) << 16) | ((bytes[2] & 0xffL) << 8) | (bytes[3] & 0xffL);
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+}
@@ -1,15 +1,20 @@
 package org.zeroBzeroT.chatCo.guarddog;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
 import org.bukkit.Location;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,20 +22,48 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Tracks player behavior heuristics to detect bot-like patterns.
  * - Join time tracking
- * - Movement verification
+ * - Movement verification, by sampling the position of players that have not moved enough yet
+ *   on their own entity scheduler. Verified players cost nothing; there is no move listener.
+ *   Teleports, respawns and world changes are not movement, nor is a jump too far for one sample.
  */
 public class BotHeuristics implements Listener {
     
+    // Faster than any sprint or elytra flight; only teleports cover more ground per tick
+    private static final double MAX_BLOCKS_PER_TICK = 5.0;
+    
     private final JavaPlugin plugin;
     private final Map<UUID, PlayerData> playerData = new ConcurrentHashMap<>();
+    // Progress from before a restart, taken over when the player joins again
+    private final Map<UUID, PlayerData> restoredData = new ConcurrentHashMap<>();
     
     private final double minMoveDistance;
     private final long minAccountAgeMs;
+    private final long sampleTicks;
+    // Stricter wait time while GuardDog is in lockdown, 0 if not overridden
+    private volatile long minAccountAgeOverrideMs;
     
     public BotHeuristics(JavaPlugin plugin, double minMoveDistance, int minAccountAgeSeconds) {
+        this(plugin, minMoveDistance, minAccountAgeSeconds, 10);
+    }
+    
+    public BotHeuristics(JavaPlugin plugin, double minMoveDistance, int minAccountAgeSeconds, int sampleTicks) {
         this.plugin = plugin;
         this.minMoveDistance = minMoveDistance;
         this.minAccountAgeMs = minAccountAgeSeconds * 1000L;
+        this.sampleTicks = Math.max(1, sampleTicks);
+    }
+    
+    /**
+     * Overrides the wait time after joining, e.g. during lockdown.
+     * @param seconds The wait time in seconds, 0 to use the configured one
+     */
+    public void setMinAccountAgeOverride(int seconds) {
+        this.minAccountAgeOverrideMs = seconds * 1000L;
+    }
+    
+    private long getMinAccountAgeMs() {
+        long override = minAccountAgeOverrideMs;
+        return override > 0 ? override : minAccountAgeMs;
     }
     
     /**
@@ -40,7 +73,7 @@ public class BotHeuristics implements Listener {
         PlayerData data = playerData.get(player.getUniqueId());
         if (data == null) return false;
         
-        return System.currentTimeMillis() - data.joinTime >= minAccountAgeMs;
+        return System.currentTimeMillis() - data.joinTime >= getMinAccountAgeMs();
     }
     
     /**
@@ -48,10 +81,10 @@ public class BotHeuristics implements Listener {
      */
     public long getSecondsUntilCanChat(Player player) {
         PlayerData data = playerData.get(player.getUniqueId());
-        if (data == null) return minAccountAgeMs / 1000;
+        if (data == null) return getMinAccountAgeMs() / 1000;
         
         long elapsed = System.currentTimeMillis() - data.joinTime;
-        long remaining = minAccountAgeMs - elapsed;
+        long remaining = getMinAccountAgeMs() - elapsed;
         return Math.max(0, remaining / 1000);
     }
     
@@ -76,6 +109,24 @@ public class BotHeuristics implements Listener {
         return Math.max(0, minMoveDistance - data.totalDistance);
     }
     
+    /**
+     * Gets how long a player has been on the server.
+     * @return Milliseconds since the join, or -1 if the player is not tracked
+     */
+    public long getTimeOnServerMs(UUID playerId) {
+        PlayerData data = playerData.get(playerId);
+        return data != null ? System.currentTimeMillis() - data.joinTime : -1;
+    }
+    
+    /**
+     * Gets how far a player has moved since joining.
+     * @return The horizontal distance in blocks, or 0 if the player is not tracked
+     */
+    public double getTotalDistance(UUID playerId) {
+        PlayerData data = playerData.get(playerId);
+        return data != null ? data.totalDistance : 0;
+    }
+    
     /**
      * Checks if player passes all heuristic checks.
      */
@@ -100,38 +151,126 @@ public class BotHeuristics implements Listener {
     
     @EventHandler(priority = EventPriority.MONITOR)
     public void onPlayerJoin(PlayerJoinEvent event) {
-        Player player = event.getPlayer();
+        startTracking(event.getPlayer());
+    }
+    
+    /**
+     * Starts tracking a player, continuing from restored progress if there is any.
+     */
+    public void startTracking(Player player) {
         Location loc = player.getLocation();
-        playerData.put(player.getUniqueId(), new PlayerData(
-            System.currentTimeMillis(),
+        PlayerData restored = restoredData.remove(player.getUniqueId());
+        PlayerData data = new PlayerData(
+            restored != null ? restored.joinTime : System.currentTimeMillis(),
             loc.getX(), loc.getY(), loc.getZ(),
-            0.0
-        ));
+            restored != null ? restored.totalDistance : 0.0
+        );
+        data.lastWorld = loc.getWorld().getUID();
+        playerData.put(player.getUniqueId(), data);
+        startSampling(player, data);
     }
     
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onPlayerMove(PlayerMoveEvent event) {
-        Player player = event.getPlayer();
-        PlayerData data = playerData.get(player.getUniqueId());
-        if (data == null) return;
+    /**
+     * Writes time on the server and movement progress of tracked players for a warm start.
+     */
+    void writeSnapshot(DataOutputStream out, long now) throws IOException {
+        long nowMs = System.currentTimeMillis();
+        for (Map.Entry<UUID, PlayerData> entry : playerData.entrySet()) {
+            out.writeBoolean(true);
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            out.writeLong(nowMs - entry.getValue().joinTime);
+            out.writeDouble(entry.getValue().totalDistance);
+        }
+        out.writeBoolean(false);
+    }
+    
+    /**
+     * Restores progress written by {@link #writeSnapshot}. Time offline does not count as time on the server.
+     */
+    void readSnapshot(DataInputStream in, long base) throws IOException {
+        long nowMs = System.currentTimeMillis();
+        while (in.readBoolean()) {
+            UUID playerId = new UUID(in.readLong(), in.readLong());
+            long timeOnServer = in.readLong();
+            double totalDistance = in.readDouble();
+            restoredData.put(playerId, new PlayerData(nowMs - timeOnServer, 0, 0, 0, totalDistance));
+        }
+    }
+    
+    /**
+     * Takes over join times and movement progress from the previous instance after a reload,
+     * and resumes sampling for players that still have to move.
+     */
+    public void copyFrom(BotHeuristics previous) {
+        playerData.putAll(previous.playerData);
+        previous.playerData.clear();
         
-        // Only count if already moved enough (optimization) or need to track
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            PlayerData data = playerData.get(player.getUniqueId());
+            if (data != null) {
+                startSampling(player, data);
+            }
+        }
+    }
+    
+    private void startSampling(Player player, PlayerData data) {
         if (data.totalDistance >= minMoveDistance) return;
         
-        Location to = event.getTo();
-        if (to == null) return;
+        // Runs on the thread that owns the player (Folia region or main thread)
+        player.getScheduler().runAtFixedRate(plugin, task -> sampleMovement(player, data, task), null, sampleTicks, sampleTicks);
+    }
+    
+    private void sampleMovement(Player player, PlayerData data, ScheduledTask task) {
+        // Stop once verified, or when the data was replaced or removed (quit, reload)
+        if (data.totalDistance >= minMoveDistance || playerData.get(player.getUniqueId()) != data) {
+            task.cancel();
+            return;
+        }
+        
+        boolean teleported = data.teleported;
+        data.teleported = false;
+        Location to = player.getLocation();
+        UUID world = to.getWorld().getUID();
         
         // Calculate horizontal distance only (ignore Y for authentication plugins)
         double dx = to.getX() - data.lastX;
         double dz = to.getZ() - data.lastZ;
         double distance = Math.sqrt(dx * dx + dz * dz);
         
-        // Only count significant movement (not just head rotation)
-        if (distance > 0.01) {
-            data.totalDistance += distance;
+        if (teleported || !world.equals(data.lastWorld) || distance > MAX_BLOCKS_PER_TICK * sampleTicks) {
+            // Moved by the server, not by walking: continue from the new position
             data.lastX = to.getX();
             data.lastY = to.getY();
             data.lastZ = to.getZ();
+            data.lastWorld = world;
+        } else if (distance > 0.01) {
+            // Only count significant movement (not just head rotation)
+            data.lastX = to.getX();
+            data.lastY = to.getY();
+            data.lastZ = to.getZ();
+            data.totalDistance += distance;
+        }
+        
+        if (data.totalDistance >= minMoveDistance) {
+            task.cancel();
+        }
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        markTeleported(event.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent event) {
+        markTeleported(event.getPlayer());
+    }
+    
+    private void markTeleported(Player player) {
+        PlayerData data = playerData.get(player.getUniqueId());
+        if (data != null) {
+            data.teleported = true;
         }
     }
     
@@ -145,12 +284,17 @@ public class BotHeuristics implements Listener {
      */
     public void clear() {
         playerData.clear();
+        restoredData.clear();
     }
     
     private static class PlayerData {
         final long joinTime;
+        // Only written by the sampler; read by chat threads
         double lastX, lastY, lastZ;
-        double totalDistance;
+        UUID lastWorld;
+        volatile double totalDistance;
+        // Set on a teleport or respawn, so the next sample does not count the jump
+        volatile boolean teleported;
         
         PlayerData(long joinTime, double x, double y, double z, double totalDistance) {
             this.joinTime = joinTime;
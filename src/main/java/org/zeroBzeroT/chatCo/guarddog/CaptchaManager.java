@@ -13,14 +13,12 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.configuration.file.YamlConfiguration;
 
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextDecoration;
 
-import java.io.File;
-import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -42,30 +40,61 @@ public class CaptchaManager implements Listener {
     
     private final JavaPlugin plugin;
     private final Map<UUID, CaptchaSession> activeSessions = new ConcurrentHashMap<>();
-    private final Map<String, Long> verifiedIps = new ConcurrentHashMap<>();
-    private final File dataFile;
-    private final long verificationDurationMs;
+    private final VerifiedAddressStore verifiedIps;
+    private final PrefixTrie networks;
+    // Prefix lengths a verification covers, in bits of the 128-bit address form
+    private final int ipv4Bits;
+    private final int ipv6Bits;
     private final int maxAttempts;
+    private final Runnable failureListener;
     
     public CaptchaManager(JavaPlugin plugin, long durationHours, int maxAttempts) {
+        this(plugin, durationHours, maxAttempts, () -> {});
+    }
+    
+    public CaptchaManager(JavaPlugin plugin, long durationHours, int maxAttempts, Runnable failureListener) {
+        this(plugin, durationHours, maxAttempts, failureListener, new PrefixTrie(), 32, 128);
+    }
+    
+    /**
+     * @param networks Admin-defined allow and deny networks
+     * @param ipv4Prefix Prefix length a verified IPv4 address covers, e.g. 24 for carrier-grade NAT pools
+     * @param ipv6Prefix Prefix length a verified IPv6 address covers, e.g. 64 for rotating privacy addresses
+     */
+    CaptchaManager(JavaPlugin plugin, long durationHours, int maxAttempts, Runnable failureListener,
+                   PrefixTrie networks, int ipv4Prefix, int ipv6Prefix) {
         this.plugin = plugin;
-        this.verificationDurationMs = durationHours * 60 * 60 * 1000;
+        this.networks = networks;
+        this.ipv4Bits = 96 + Math.max(0, Math.min(32, ipv4Prefix));
+        this.ipv6Bits = Math.max(0, Math.min(128, ipv6Prefix));
+        this.failureListener = failureListener;
         this.maxAttempts = maxAttempts;
-        this.dataFile = new File(plugin.getDataFolder(), "guarddog_verified.yml");
-        loadVerifiedIps();
+        this.verifiedIps = new VerifiedAddressStore(plugin.getDataFolder(), durationHours * 60 * 60 * 1000, plugin.getLogger());
     }
     
     /**
      * Checks if a player's IP is verified (passed captcha recently).
+     * A verification covers the whole network of the verified address, unless the address is in a deny network.
+     * Addresses in allow networks are always verified.
      */
     public boolean isVerified(Player player) {
-        String ip = getPlayerIp(player);
+        byte[] ip = getPlayerIp(player);
         if (ip == null) return true; // Can't check, allow
         
-        Long verifiedTime = verifiedIps.get(ip);
-        if (verifiedTime == null) return false;
+        long high = AddressKeys.high(ip);
+        long low = AddressKeys.low(ip);
+        long now = System.currentTimeMillis();
+        byte policy = networks.lookup(high, low);
+        if (policy == PrefixTrie.ALLOW) return true;
         
-        return System.currentTimeMillis() - verifiedTime < verificationDurationMs;
+        if (policy != PrefixTrie.DENY) {
+            int bits = ip.length == 4 ? ipv4Bits : ipv6Bits;
+            if (verifiedIps.isVerified(AddressKeys.maskHigh(high, bits), AddressKeys.maskLow(low, bits), now)) {
+                return true;
+            }
+        }
+        // Exact address, also covers verifications stored with a narrower prefix setting
+        return verifiedIps.isVerified(high, low, now);
     }
     
     /**
@@ -123,10 +152,12 @@ public class CaptchaManager implements Listener {
      * Marks a player's IP as verified.
      */
     public void verify(Player player) {
-        String ip = getPlayerIp(player);
+        byte[] ip = getPlayerIp(player);
         if (ip != null) {
-            verifiedIps.put(ip, System.currentTimeMillis());
-            saveVerifiedIps();
+            long high = AddressKeys.high(ip);
+            long low = AddressKeys.low(ip);
+            int bits = networks.lookup(high, low) == PrefixTrie.DENY ? 128 : ip.length == 4 ? ipv4Bits : ipv6Bits;
+            verifiedIps.put(AddressKeys.maskHigh(high, bits), AddressKeys.maskLow(low, bits), System.currentTimeMillis());
         }
         activeSessions.remove(player.getUniqueId());
         player.sendMessage(Component.text("✓ Verification successful! You can now chat.", NamedTextColor.GREEN));
@@ -139,6 +170,7 @@ public class CaptchaManager implements Listener {
         CaptchaSession session = activeSessions.get(player.getUniqueId());
         if (session == null) return;
         
+        failureListener.run();
         session.attempts++;
         if (session.attempts >= maxAttempts) {
             activeSessions.remove(player.getUniqueId());
@@ -196,9 +228,10 @@ public class CaptchaManager implements Listener {
         activeSessions.remove(event.getPlayer().getUniqueId());
     }
     
-    private String getPlayerIp(Player player) {
-        if (player.getAddress() == null) return null;
-        return player.getAddress().getAddress().getHostAddress();
+    private byte[] getPlayerIp(Player player) {
+        InetSocketAddress address = player.getAddress();
+        if (address == null) return null;
+        return address.getAddress().getAddress();
     }
     
     private String formatMaterialName(Material material) {
@@ -215,45 +248,18 @@ public class CaptchaManager implements Listener {
         return result.toString().trim();
     }
     
-    private void loadVerifiedIps() {
-        if (!dataFile.exists()) return;
-        
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(dataFile);
-        long now = System.currentTimeMillis();
-        
-        for (String ip : config.getKeys(false)) {
-            long timestamp = config.getLong(ip);
-            // Only load non-expired entries
-            if (now - timestamp < verificationDurationMs) {
-                verifiedIps.put(ip, timestamp);
-            }
-        }
-    }
-    
-    private void saveVerifiedIps() {
-        YamlConfiguration config = new YamlConfiguration();
-        long now = System.currentTimeMillis();
-        
-        // Only save non-expired entries
-        for (Map.Entry<String, Long> entry : verifiedIps.entrySet()) {
-            if (now - entry.getValue() < verificationDurationMs) {
-                config.set(entry.getKey(), entry.getValue());
-            }
-        }
-        
-        try {
-            config.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Failed to save GuardDog verified IPs: " + e.getMessage());
-        }
-    }
-    
     /**
      * Clears all verification data.
      */
     public void clearAllVerifications() {
         verifiedIps.clear();
-        saveVerifiedIps();
+    }
+    
+    /**
+     * Writes pending verifications to disk and stops the background writer.
+     */
+    public void close() {
+        verifiedIps.close();
     }
     
     private static class CaptchaSession {
@@ -0,0 +1,176 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.Arrays;
+
+/**
+ * Bounded Levenshtein distance using Myers' bit-parallel algorithm, in Hyyrö's block form
+ * for strings longer than 64 characters. One text character updates 64 rows of the DP column
+ * at once, and the computation stops as soon as the distance is known to exceed the bound.
+ * Work buffers are kept per thread, so no memory is allocated per call.
+ */
+final class EditDistance {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private EditDistance() {
+    }
+
+    /**
+     * Computes the edit distance between two strings, up to a bound.
+     * @param a The first string
+     * @param b The second string
+     * @param maxDistance The largest distance of interest
+     * @return The edit distance, or maxDistance + 1 if it is larger than maxDistance
+     */
+    static int bounded(String a, String b, int maxDistance) {
+        if (maxDistance < 0) {
+            return 0;
+        }
+
+        // The shorter string is the bit pattern, the longer one is scanned
+        String pattern = a.length() <= b.length() ? a : b;
+        String text = pattern == a ? b : a;
+        int m = pattern.length();
+        int n = text.length();
+
+        // Length prefilter: every extra character costs one edit
+        if (n - m > maxDistance) {
+            return maxDistance + 1;
+        }
+        if (m == 0) {
+            return n;
+        }
+
+        Scratch scratch = SCRATCH.get();
+        int words = scratch.prepare(pattern);
+        long[] pv = scratch.pv;
+        long[] mv = scratch.mv;
+        long lastBit = 1L << ((m - 1) & 63);
+        int score = m;
+
+        for (int j = 0; j < n; j++) {
+            int slot = scratch.find(text.charAt(j));
+            int base = slot * words;
+            // Row 0 of the DP matrix grows by one per column
+            int carry = 1;
+
+            for (int w = 0; w < words; w++) {
+                long eq = slot < 0 ? 0 : scratch.peq[base + w];
+                long p = pv[w];
+                long mm = mv[w];
+
+                long xv = eq | mm;
+                if (carry < 0) {
+                    eq |= 1;
+                }
+                long xh = (((eq & p) + p) ^ p) | eq;
+                long ph = mm | ~(xh | p);
+                long mh = p & xh;
+
+                long highBit = w == words - 1 ? lastBit : 1L << 63;
+                int out = (ph & highBit) != 0 ? 1 : (mh & highBit) != 0 ? -1 : 0;
+
+                ph <<= 1;
+                mh <<= 1;
+                if (carry < 0) {
+                    mh |= 1;
+                } else if (carry > 0) {
+                    ph |= 1;
+                }
+                pv[w] = mh | ~(xv | ph);
+                mv[w] = ph & xv;
+                carry = out;
+            }
+
+            score += carry;
+
+            // Each remaining column can lower the score by at most one
+            if (score - (n - j - 1) > maxDistance) {
+                return maxDistance + 1;
+            }
+        }
+
+        return score <= maxDistance ? score : maxDistance + 1;
+    }
+
+    /**
+     * Per thread pattern bit vectors and DP column state.
+     * The character table is open addressed and invalidated by bumping a generation stamp.
+     */
+    private static final class Scratch {
+        char[] keys = new char[0];
+        int[] stamps = new int[0];
+        long[] peq = new long[0];
+        long[] pv = new long[0];
+        long[] mv = new long[0];
+        int mask;
+        int words;
+        int generation;
+
+        int prepare(String pattern) {
+            int m = pattern.length();
+            words = (m + 63) >>> 6;
+            int size = Integer.highestOneBit(Math.max(32, m * 2 - 1)) << 1;
+
+            if (keys.length < size) {
+                keys = new char[size];
+                stamps = new int[size];
+            }
+            if (peq.length < size * words) {
+                peq = new long[size * words];
+            }
+            if (pv.length < words) {
+                pv = new long[words];
+                mv = new long[words];
+            }
+
+            mask = size - 1;
+            if (++generation == 0) {
+                Arrays.fill(stamps, 0);
+                generation = 1;
+            }
+
+            for (int i = 0; i < m; i++) {
+                int slot = insert(pattern.charAt(i));
+                peq[slot * words + (i >>> 6)] |= 1L << (i & 63);
+            }
+
+            for (int w = 0; w < words; w++) {
+                pv[w] = -1L;
+                mv[w] = 0;
+            }
+            return words;
+        }
+
+        int find(char c) {
+            for (int i = hash(c) & mask; ; i = (i + 1) & mask) {
+                if (stamps[i] != generation) {
+                    return -1;
+                }
+                if (keys[i] == c) {
+                    return i;
+                }
+            }
+        }
+
+        private int insert(char c) {
+            for (int i = hash(c) & mask; ; i = (i + 1) & mask) {
+                if (stamps[i] != generation) {
+                    stamps[i] = generation;
+                    keys[i] = c;
+                    for (int w = 0; w < words; w++) {
+                        peq[i * words + w] = 0;
+                    }
+                    return i;
+                }
+                if (keys[i] == c) {
+                    return i;
+                }
+            }
+        }
+
+        private static int hash(char c) {
+            return c * 0x9E3779B1 >>> 16;
+        }
+    }
+}
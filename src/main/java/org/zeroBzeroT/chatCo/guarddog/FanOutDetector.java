@@ -0,0 +1,89 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detects one sender whispering many distinct players in a short window,
+ * the typical pattern of bots flooding /msg to everyone online.
+ */
+public class FanOutDetector {
+
+    private final Map<UUID, TargetHistory> histories = new ConcurrentHashMap<>();
+    private final int maxTargets;
+    private final long windowMs;
+    private final int historySize;
+
+    public FanOutDetector(int maxTargets, int windowSeconds) {
+        this.maxTargets = maxTargets;
+        this.windowMs = windowSeconds * 1000L;
+        // Large enough to see one more distinct target than allowed
+        this.historySize = Math.max(16, maxTargets + 1);
+    }
+
+    /**
+     * Records a whisper and checks if the sender is fanning out.
+     * @param senderId The sender's UUID
+     * @param targetId The receiver's UUID
+     * @return true if the sender whispered more than the allowed number of distinct players in the window
+     */
+    public boolean recordAndCheck(UUID senderId, UUID targetId) {
+        TargetHistory history = histories.computeIfAbsent(senderId, k -> new TargetHistory(historySize));
+        long target = targetId.getMostSignificantBits() ^ targetId.getLeastSignificantBits();
+        long now = System.currentTimeMillis();
+
+        synchronized (history) {
+            history.add(target, now);
+            return history.countDistinct(now - windowMs) > maxTargets;
+        }
+    }
+
+    /**
+     * Removes a sender's history (on disconnect).
+     * @param senderId The sender's UUID
+     */
+    public void removePlayer(UUID senderId) {
+        histories.remove(senderId);
+    }
+
+    /**
+     * Clears all histories.
+     */
+    public void clear() {
+        histories.clear();
+    }
+
+    /**
+     * Fixed-size ring of recent whisper targets and times.
+     */
+    private static class TargetHistory {
+        final long[] targets;
+        final long[] times;
+        int next;
+
+        TargetHistory(int size) {
+            targets = new long[size];
+            times = new long[size];
+        }
+
+        void add(long target, long time) {
+            targets[next] = target;
+            times[next] = time;
+            next = (next + 1) % targets.length;
+        }
+
+        int countDistinct(long since) {
+            int distinct = 0;
+            outer:
+            for (int i = 0; i < targets.length; i++) {
+                if (times[i] == 0 || times[i] < since) continue;
+                for (int j = 0; j < i; j++) {
+                    if (times[j] != 0 && times[j] >= since && targets[j] == targets[i]) continue outer;
+                }
+                distinct++;
+            }
+            return distinct;
+        }
+    }
+}
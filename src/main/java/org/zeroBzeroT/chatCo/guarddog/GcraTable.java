@@ -0,0 +1,180 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded GCRA state table keyed by primitive longs (addresses, network prefixes).
+ * A slot whose arrival time has passed holds a full bucket and is free for reuse, so entries
+ * expire by themselves. When all slots in a probe window are live, the one closest to expiring
+ * is evicted. Memory stays fixed no matter how many distinct keys are seen.
+ */
+final class GcraTable {
+
+    private static final int SEGMENTS = 16;
+    private static final int MAX_PROBE = 8;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final LongAdder evictions = new LongAdder();
+
+    GcraTable(int capacity) {
+        int perSegment = Integer.highestOneBit(Math.max(MAX_PROBE, capacity / SEGMENTS - 1)) << 1;
+        long now = System.nanoTime();
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment, now);
+        }
+    }
+
+    /**
+     * Attempts to consume one emission for a key.
+     * @param key The key
+     * @param emissionIntervalNs Time to regain one token
+     * @param burstToleranceNs How far the arrival time may run ahead of now
+     * @param now The current nanoTime
+     * @return 0 if allowed, otherwise nanoseconds until the key is allowed again
+     */
+    long tryConsume(long key, long emissionIntervalNs, long burstToleranceNs, long now) {
+        long hash = mix(key);
+        Segment segment = segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+
+        synchronized (segment) {
+            int slot = segment.find(key, (int) hash, now, evictions);
+            long next = Math.max(segment.arrivalTimes[slot] - now, 0) + now + emissionIntervalNs;
+            if (next - now > burstToleranceNs) {
+                return next - now - burstToleranceNs;
+            }
+            segment.arrivalTimes[slot] = next;
+            return 0;
+        }
+    }
+
+    /**
+     * Gives back one emission consumed for a key, e.g. when a later check rejected the message.
+     * Does nothing if the key is no longer tracked.
+     * @param key The key
+     * @param emissionIntervalNs Time to regain one token
+     * @param now The current nanoTime
+     */
+    void refund(long key, long emissionIntervalNs, long now) {
+        long hash = mix(key);
+        Segment segment = segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+
+        synchronized (segment) {
+            for (int probe = 0; probe < MAX_PROBE; probe++) {
+                int i = ((int) hash + probe) & segment.mask;
+                if (segment.keys[i] == key && segment.arrivalTimes[i] - now > 0) {
+                    segment.arrivalTimes[i] -= emissionIntervalNs;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of live entries evicted to make room for new keys.
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Writes the keys that are still limited, with their arrival times relative to now.
+     */
+    void writeTo(DataOutputStream out, long now) throws IOException {
+        for (Segment segment : segments) {
+            long[] keys;
+            long[] arrivalTimes;
+            synchronized (segment) {
+                keys = segment.keys.clone();
+                arrivalTimes = segment.arrivalTimes.clone();
+            }
+
+            for (int i = 0; i < keys.length; i++) {
+                if (arrivalTimes[i] - now > 0) {
+                    out.writeBoolean(true);
+                    out.writeLong(keys[i]);
+                    out.writeLong(arrivalTimes[i] - now);
+                }
+            }
+        }
+        out.writeBoolean(false);
+    }
+
+    /**
+     * Restores keys written by {@link #writeTo}. An arrival time already in the past is skipped.
+     * @param base The nanoTime that corresponds to the time of writing
+     */
+    void readFrom(DataInputStream in, long base) throws IOException {
+        long now = System.nanoTime();
+        while (in.readBoolean()) {
+            long key = in.readLong();
+            long arrivalTime = base + in.readLong();
+            if (arrivalTime - now <= 0) continue;
+
+            long hash = mix(key);
+            Segment segment = segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+            synchronized (segment) {
+                int slot = segment.find(key, (int) hash, now, evictions);
+                if (arrivalTime - segment.arrivalTimes[slot] > 0) {
+                    segment.arrivalTimes[slot] = arrivalTime;
+                }
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Segment {
+        final long[] keys;
+        final long[] arrivalTimes;
+        final int mask;
+
+        Segment(int size, long now) {
+            keys = new long[size];
+            arrivalTimes = new long[size];
+            mask = size - 1;
+            // Arrival times in the past mark free slots
+            Arrays.fill(arrivalTimes, now);
+        }
+
+        int find(long key, int hash, long now, LongAdder evictions) {
+            int free = -1;
+            int oldest = -1;
+            long oldestTime = 0;
+
+            for (int probe = 0; probe < MAX_PROBE; probe++) {
+                int i = (hash + probe) & mask;
+                if (arrivalTimes[i] - now > 0) {
+                    if (keys[i] == key) {
+                        return i;
+                    }
+                    if (oldest < 0 || arrivalTimes[i] - oldestTime < 0) {
+                        oldest = i;
+                        oldestTime = arrivalTimes[i];
+                    }
+                } else if (free < 0) {
+                    free = i;
+                }
+            }
+
+            int slot = free;
+            if (slot < 0) {
+                slot = oldest;
+                evictions.increment();
+            }
+            keys[slot] = key;
+            arrivalTimes[slot] = now;
+            return slot;
+        }
+    }
+}
@@ -1,42 +1,69 @@
 package org.zeroBzeroT.chatCo.guarddog;
 
 import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
-import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.PlayerCommandSendEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
+import org.zeroBzeroT.chatCo.ChatContext;
 
 /**
  * Main GuardDog anti-spam module.
- * Coordinates all sub-modules: Captcha, RateLimiter, SimilarityFilter, BotHeuristics.
+ * Coordinates all sub-modules: Captcha, RateLimiter, SimilarityFilter, BotHeuristics,
+ * FanOutDetector, WaveDetector, LockdownMonitor.
  * 
  * Design principle: MINIMIZE disruption to legitimate players.
  * - Captcha only triggers on first chat attempt from unverified IP
  * - Rate limiting allows bursts, only blocks sustained spam
  * - Similarity check targets bots, not normal conversation
+ * - Lockdown tightens the checks only while an attack is going on
+ * - Trusted players (clean history this session) skip the captcha and heuristics checks
  */
 public class GuardDogModule implements Listener {
     
     private final JavaPlugin plugin;
     private boolean enabled;
+    private boolean registered;
     
     // Sub-modules
     private CaptchaManager captchaManager;
     private RateLimiter rateLimiter;
     private SimilarityFilter similarityFilter;
     private BotHeuristics botHeuristics;
+    private FanOutDetector fanOutDetector;
+    private WaveDetector waveDetector;
+    private ReconnectCache reconnectCache;
+    private ShadowEvaluator shadowEvaluator;
+    private LockdownMonitor lockdownMonitor;
+    private TrustTracker trustTracker;
+    private RateLimiter lockdownRateLimiter;
     
     // Config values
     private boolean captchaEnabled;
     private boolean rateLimitEnabled;
     private boolean similarityEnabled;
     private boolean heuristicsEnabled;
+    private boolean fanOutEnabled;
+    private boolean wavesEnabled;
+    private boolean reconnectEnabled;
+    private boolean snapshotEnabled;
+    private long snapshotMaxAgeMs;
+    private boolean lockdownEnabled;
+    private boolean trustEnabled;
+    private int lockdownMinAccountAge;
     
     public GuardDogModule(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -58,25 +85,114 @@ public class GuardDogModule implements Listener {
         this.captchaEnabled = plugin.getConfig().getBoolean("GuardDog.captcha.enabled", true);
         int captchaDuration = plugin.getConfig().getInt("GuardDog.captcha.duration_hours", 24);
         int captchaMaxAttempts = plugin.getConfig().getInt("GuardDog.captcha.max_attempts", 3);
-        this.captchaManager = new CaptchaManager(plugin, captchaDuration, captchaMaxAttempts);
+        int ipv4Prefix = plugin.getConfig().getInt("GuardDog.captcha.ipv4_prefix", 32);
+        int ipv6Prefix = plugin.getConfig().getInt("GuardDog.captcha.ipv6_prefix", 64);
+        PrefixTrie networks = new PrefixTrie();
+        loadNetworks(networks, "GuardDog.captcha.allow_cidrs", PrefixTrie.ALLOW);
+        loadNetworks(networks, "GuardDog.captcha.deny_cidrs", PrefixTrie.DENY);
+        this.captchaManager = new CaptchaManager(plugin, captchaDuration, captchaMaxAttempts, () -> lockdownMonitor.recordCaptchaFailure(),
+            networks, ipv4Prefix, ipv6Prefix);
         
         // Load rate limit config
         this.rateLimitEnabled = plugin.getConfig().getBoolean("GuardDog.ratelimit.enabled", true);
         int maxBurst = plugin.getConfig().getInt("GuardDog.ratelimit.max_burst", 3);
         int refillSeconds = plugin.getConfig().getInt("GuardDog.ratelimit.refill_seconds", 2);
-        this.rateLimiter = new RateLimiter(maxBurst, refillSeconds);
+        RateLimiter.LayerLimit ipLimit = loadLayerLimit("GuardDog.ratelimit.ip", 5, 1.0);
+        RateLimiter.LayerLimit subnetLimit = loadLayerLimit("GuardDog.ratelimit.subnet", 10, 0.5);
+        RateLimiter.LayerLimit globalLimit = loadLayerLimit("GuardDog.ratelimit.global", 100, 0.02);
+        int maxTrackedAddresses = plugin.getConfig().getInt("GuardDog.ratelimit.max_tracked_addresses", 65536);
+        this.rateLimiter = new RateLimiter(maxBurst, refillSeconds, ipLimit, subnetLimit, globalLimit, maxTrackedAddresses);
         
         // Load similarity config
         this.similarityEnabled = plugin.getConfig().getBoolean("GuardDog.similarity.enabled", true);
         double threshold = plugin.getConfig().getDouble("GuardDog.similarity.threshold", 0.85);
         boolean checkGlobal = plugin.getConfig().getBoolean("GuardDog.similarity.check_global_chat", true);
-        this.similarityFilter = new SimilarityFilter(threshold, checkGlobal);
+        int globalWindow = plugin.getConfig().getInt("GuardDog.similarity.global_window", 5000);
+        int globalMinLength = plugin.getConfig().getInt("GuardDog.similarity.global_min_length", 12);
+        int globalMaxAge = plugin.getConfig().getInt("GuardDog.similarity.global_max_age_seconds", 900);
+        this.similarityFilter = new SimilarityFilter(threshold, checkGlobal, globalWindow, globalMinLength, globalMaxAge);
         
         // Load heuristics config
         this.heuristicsEnabled = plugin.getConfig().getBoolean("GuardDog.heuristics.enabled", true);
         double minMoveDistance = plugin.getConfig().getDouble("GuardDog.heuristics.min_move_distance", 2.0);
         int minAccountAge = plugin.getConfig().getInt("GuardDog.heuristics.min_account_age_seconds", 5);
-        this.botHeuristics = new BotHeuristics(plugin, minMoveDistance, minAccountAge);
+        int moveSampleTicks = plugin.getConfig().getInt("GuardDog.heuristics.move_sample_ticks", 10);
+        this.botHeuristics = new BotHeuristics(plugin, minMoveDistance, minAccountAge, moveSampleTicks);
+        
+        // Load whisper fan-out config
+        this.fanOutEnabled = plugin.getConfig().getBoolean("GuardDog.whispers.fanout.enabled", true);
+        int maxTargets = plugin.getConfig().getInt("GuardDog.whispers.fanout.max_targets", 6);
+        int windowSeconds = plugin.getConfig().getInt("GuardDog.whispers.fanout.window_seconds", 30);
+        this.fanOutDetector = new FanOutDetector(maxTargets, windowSeconds);
+        
+        // Load spam wave config
+        this.wavesEnabled = plugin.getConfig().getBoolean("GuardDog.waves.enabled", true);
+        int maxSenders = plugin.getConfig().getInt("GuardDog.waves.max_senders", 5);
+        int waveWindowSeconds = plugin.getConfig().getInt("GuardDog.waves.window_seconds", 60);
+        int minLength = plugin.getConfig().getInt("GuardDog.waves.min_length", 12);
+        this.waveDetector = new WaveDetector(maxSenders, waveWindowSeconds, minLength);
+        
+        // Load trust config
+        this.trustEnabled = plugin.getConfig().getBoolean("GuardDog.trust.enabled", true);
+        int cleanMessages = plugin.getConfig().getInt("GuardDog.trust.clean_messages", 5);
+        this.trustTracker = new TrustTracker(cleanMessages);
+        
+        // Load lockdown config
+        this.lockdownEnabled = plugin.getConfig().getBoolean("GuardDog.lockdown.enabled", true);
+        this.lockdownMinAccountAge = plugin.getConfig().getInt("GuardDog.lockdown.strict.min_account_age_seconds", 60);
+        int lockdownBurst = plugin.getConfig().getInt("GuardDog.lockdown.strict.max_burst", 1);
+        int lockdownRefill = plugin.getConfig().getInt("GuardDog.lockdown.strict.refill_seconds", 5);
+        this.lockdownRateLimiter = new RateLimiter(lockdownBurst, lockdownRefill);
+        this.lockdownMonitor = new LockdownMonitor(plugin, plugin.getConfig(), this::onLockdownTransition);
+        
+        // Load reconnect config
+        this.reconnectEnabled = plugin.getConfig().getBoolean("GuardDog.reconnect.enabled", true);
+        int reconnectEntries = plugin.getConfig().getInt("GuardDog.reconnect.max_entries", 4096);
+        int reconnectMaxAge = plugin.getConfig().getInt("GuardDog.reconnect.max_age_seconds", 600);
+        this.reconnectCache = new ReconnectCache(reconnectEntries, reconnectMaxAge);
+        
+        // Load warm start config
+        this.snapshotEnabled = plugin.getConfig().getBoolean("GuardDog.snapshot.enabled", true);
+        this.snapshotMaxAgeMs = plugin.getConfig().getInt("GuardDog.snapshot.max_age_seconds", 300) * 1000L;
+        
+        // Load shadow config
+        ConfigurationSection shadowConfigs = plugin.getConfig().getConfigurationSection("GuardDog.shadow.configs");
+        if (plugin.getConfig().getBoolean("GuardDog.shadow.enabled", false) && shadowConfigs != null) {
+            this.shadowEvaluator = new ShadowEvaluator(shadowConfigs, plugin.getConfig().getConfigurationSection("GuardDog"));
+        } else {
+            this.shadowEvaluator = null;
+        }
+    }
+    
+    /**
+     * Applies or removes the stricter lockdown settings that are not checked per message.
+     */
+    private void onLockdownTransition(boolean active) {
+        botHeuristics.setMinAccountAgeOverride(active ? lockdownMinAccountAge : 0);
+        if (!active) {
+            lockdownRateLimiter.clear();
+        }
+    }
+    
+    /**
+     * Checks if GuardDog is in lockdown.
+     */
+    public boolean isLockedDown() {
+        return lockdownEnabled && lockdownMonitor.isActive();
+    }
+    
+    private void loadNetworks(PrefixTrie networks, String path, byte value) {
+        for (String cidr : plugin.getConfig().getStringList(path)) {
+            if (!networks.insert(cidr, value)) {
+                plugin.getLogger().warning("[GuardDog] Ignoring invalid CIDR in " + path + ": " + cidr);
+            }
+        }
+    }
+    
+    private RateLimiter.LayerLimit loadLayerLimit(String path, int defaultBurst, double defaultRefillSeconds) {
+        return new RateLimiter.LayerLimit(
+            plugin.getConfig().getInt(path + ".max_burst", defaultBurst),
+            plugin.getConfig().getDouble(path + ".refill_seconds", defaultRefillSeconds));
     }
     
     /**
@@ -84,83 +200,235 @@ public class GuardDogModule implements Listener {
      * Note: This clears rate limit and similarity history, but preserves captcha verifications.
      */
     public void reload() {
+        CaptchaManager previousCaptchaManager = captchaManager;
+        BotHeuristics previousHeuristics = botHeuristics;
+        LockdownMonitor previousMonitor = lockdownMonitor;
+        previousMonitor.stop();
+        if (shadowEvaluator != null) {
+            shadowEvaluator.close();
+        }
+        // Flush verifications so the new captcha manager loads them
+        previousCaptchaManager.close();
+        if (previousMonitor.isActive()) {
+            plugin.getLogger().info("[GuardDog] Lockdown lifted (configuration reloaded)");
+        }
+        
         loadConfig();
+        
+        // The new sub-modules replace the old ones as listeners
+        if (registered) {
+            HandlerList.unregisterAll(previousCaptchaManager);
+            HandlerList.unregisterAll(previousHeuristics);
+            Bukkit.getPluginManager().registerEvents(captchaManager, plugin);
+            Bukkit.getPluginManager().registerEvents(botHeuristics, plugin);
+            botHeuristics.copyFrom(previousHeuristics);
+            
+            if (lockdownEnabled) {
+                lockdownMonitor.start();
+            }
+        }
         plugin.getLogger().info("[GuardDog] Configuration reloaded");
     }
     
+    /**
+     * Stops background tasks and writes captcha verifications to disk.
+     */
+    public void close() {
+        lockdownMonitor.stop();
+        captchaManager.close();
+        if (shadowEvaluator != null) {
+            shadowEvaluator.close();
+        }
+        
+        if (enabled && snapshotEnabled) {
+            // Everyone is about to disconnect; their state goes into the snapshot via the reconnect cache
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                departPlayer(player, true);
+            }
+            newSnapshot().save();
+        }
+    }
+    
+    private StateSnapshot newSnapshot() {
+        // Section ids are stored in the file; never reuse one for other data
+        return new StateSnapshot(new File(plugin.getDataFolder(), "guarddog_state.dat"), plugin.getLogger())
+            .section(1, reconnectCache::writeSnapshot, reconnectCache::readSnapshot)
+            .section(2, rateLimiter::writeSnapshot, rateLimiter::readSnapshot)
+            .section(3, similarityFilter::writeSnapshot, similarityFilter::readSnapshot)
+            .section(4, botHeuristics::writeSnapshot, botHeuristics::readSnapshot);
+    }
+    
     /**
      * Register all event listeners.
      */
     public void registerEvents() {
         if (!enabled) return;
         
+        registered = true;
+        
+        // Warm start from the state saved on shutdown; players already online (plugin reload) get theirs right away
+        if (snapshotEnabled && newSnapshot().load(snapshotMaxAgeMs)) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                restorePlayer(player, getAddress(player));
+                botHeuristics.startTracking(player);
+            }
+        }
+        
         Bukkit.getPluginManager().registerEvents(this, plugin);
         Bukkit.getPluginManager().registerEvents(captchaManager, plugin);
         Bukkit.getPluginManager().registerEvents(botHeuristics, plugin);
+        
+        if (lockdownEnabled) {
+            lockdownMonitor.start();
+        }
+    }
+    
+    /**
+     * Outcome of the GuardDog checks for a message.
+     * LOCKDOWN is a block by a measure that only applies during lockdown: the captcha for everyone
+     * or the tighter rate limit.
+     */
+    public enum Verdict {
+        ALLOW, CAPTCHA, HEURISTICS, RATE_LIMITED, FAN_OUT, WAVE, SIMILAR, LOCKDOWN
     }
     
     /**
-     * Main chat filter - runs at LOWEST priority to intercept before other plugins.
+     * Main chat filter - the first stage of the chat pipeline, runs before other plugins.
      * Focus: Block bots, allow legitimate players through with minimal friction.
      */
-    @EventHandler(priority = EventPriority.LOWEST)
-    public void onAsyncChat(AsyncPlayerChatEvent event) {
-        if (!enabled) return;
-        if (event.isCancelled()) return;
+    public void checkChat(ChatContext context) {
+        if (evaluate(context.getPlayer(), context.getRawMessage(), null) != Verdict.ALLOW) {
+            context.cancel();
+        }
+    }
+    
+    /**
+     * Runs all GuardDog checks on a public message or whisper. Blocked players are told why,
+     * and allowed messages are recorded for future similarity checks. Safe to call from any thread.
+     * @param player The sender
+     * @param message The message text
+     * @param whisperTarget The whisper receiver, or null for public chat
+     * @return ALLOW if the message may be sent, otherwise the check that blocked it
+     */
+    public Verdict evaluate(Player player, String message, Player whisperTarget) {
+        if (!enabled) return Verdict.ALLOW;
         
-        Player player = event.getPlayer();
-        String message = event.getMessage();
+        boolean lockedDown = isLockedDown();
+        // FAST PATH: trusted players already proved themselves this session
+        boolean trusted = trustEnabled && trustTracker.isTrusted(player.getUniqueId());
         
-        // BYPASS: Ops bypass all checks
-        if (player.isOp()) {
-            recordMessageIfEnabled(player, message);
-            return;
+        if (!trusted) {
+            // BYPASS: Ops bypass all checks
+            if (player.isOp()) {
+                recordMessageIfEnabled(player, message);
+                return Verdict.ALLOW;
+            }
+            
+            // BYPASS: Permission to bypass GuardDog
+            if (player.hasPermission("chatco.guarddog.bypass")) {
+                recordMessageIfEnabled(player, message);
+                return Verdict.ALLOW;
+            }
         }
         
-        // BYPASS: Permission to bypass GuardDog
-        if (player.hasPermission("chatco.guarddog.bypass")) {
-            recordMessageIfEnabled(player, message);
-            return;
+        Verdict verdict = trusted ? Verdict.ALLOW : checkPlayer(player, lockedDown);
+        if (verdict == Verdict.ALLOW) {
+            verdict = checkMessage(player, message, whisperTarget, lockedDown);
         }
         
-        // CHECK 1: Captcha verification (IP-based, 24h validity)
-        if (captchaEnabled && !captchaManager.isVerified(player)) {
-            event.setCancelled(true);
-            
+        // Alternative settings see the same message, on their own thread
+        ShadowEvaluator shadow = shadowEvaluator;
+        if (shadow != null) {
+            shadow.submit(player, message, verdict, botHeuristics, trusted);
+        }
+        
+        if (verdict != Verdict.ALLOW) {
+            // Blocks caused by the lockdown itself would keep it from ever relaxing
+            if (verdict != Verdict.LOCKDOWN) {
+                lockdownMonitor.recordBlockedMessage();
+            }
+            trustTracker.revoke(player.getUniqueId());
+        } else if (trustEnabled && !trusted) {
+            trustTracker.recordClean(player.getUniqueId());
+        }
+        return verdict;
+    }
+    
+    /**
+     * Checks that skip trusted players: captcha and heuristics.
+     */
+    private Verdict checkPlayer(Player player, boolean lockedDown) {
+        // CHECK 1: Captcha verification (IP-based, 24h validity) - required for everyone during lockdown
+        if ((captchaEnabled || lockedDown) && !captchaManager.isVerified(player)) {
             // Show captcha GUI on main thread
             Bukkit.getScheduler().runTask(plugin, () -> {
                 if (!captchaManager.hasPendingCaptcha(player)) {
                     captchaManager.showCaptcha(player);
                 }
             });
-            return;
+            return captchaEnabled ? Verdict.CAPTCHA : Verdict.LOCKDOWN;
         }
         
         // CHECK 2: Heuristics (join time + movement)
         if (heuristicsEnabled && !botHeuristics.passesAllChecks(player)) {
-            event.setCancelled(true);
             String reason = botHeuristics.getFailureReason(player);
             player.sendMessage(Component.text(reason, NamedTextColor.YELLOW));
-            return;
+            return Verdict.HEURISTICS;
+        }
+        
+        return Verdict.ALLOW;
+    }
+    
+    /**
+     * Checks that run for every message, trusted or not.
+     */
+    private Verdict checkMessage(Player player, String message, Player whisperTarget, boolean lockedDown) {
+        // CHECK 3: Rate limiting (player, IP, network and server-wide)
+        if (rateLimitEnabled) {
+            RateLimiter.Decision decision = rateLimiter.tryConsume(player.getUniqueId(), getAddress(player));
+            if (!decision.allowed()) {
+                long wait = Math.max(1, decision.retryAfterSeconds());
+                if (decision.limit() == RateLimiter.Limit.GLOBAL) {
+                    player.sendMessage(Component.text("Chat is busy right now! Wait " + wait + "s before chatting again.", NamedTextColor.RED));
+                } else {
+                    player.sendMessage(Component.text("Slow down! Wait " + wait + "s before chatting again.", NamedTextColor.RED));
+                }
+                return Verdict.RATE_LIMITED;
+            }
+        }
+        
+        // Tighter per-player burst during lockdown
+        if (lockedDown && !lockdownRateLimiter.tryConsume(player.getUniqueId())) {
+            long wait = Math.max(1, lockdownRateLimiter.getSecondsUntilRefill(player.getUniqueId()));
+            player.sendMessage(Component.text("Chat is in lockdown! Wait " + wait + "s before chatting again.", NamedTextColor.RED));
+            return Verdict.LOCKDOWN;
+        }
+        
+        // CHECK 4: Whisper fan-out (one sender messaging many players)
+        if (whisperTarget != null && fanOutEnabled && fanOutDetector.recordAndCheck(player.getUniqueId(), whisperTarget.getUniqueId())) {
+            player.sendMessage(Component.text("Message blocked: you are messaging too many players at once.", NamedTextColor.RED));
+            return Verdict.FAN_OUT;
         }
         
-        // CHECK 3: Rate limiting
-        if (rateLimitEnabled && !rateLimiter.tryConsume(player.getUniqueId())) {
-            event.setCancelled(true);
-            long wait = rateLimiter.getSecondsUntilRefill(player.getUniqueId());
-            player.sendMessage(Component.text("Slow down! Wait " + Math.max(1, wait) + "s before chatting again.", NamedTextColor.RED));
-            return;
+        // CHECK 5: Spam waves (same text from many accounts)
+        if (wavesEnabled && waveDetector.recordAndCheck(player.getUniqueId(), message)) {
+            player.sendMessage(Component.text("Message blocked: this message is being spammed by many players.", NamedTextColor.RED));
+            return Verdict.WAVE;
         }
         
-        // CHECK 4: Similarity filter
-        if (similarityEnabled && similarityFilter.isTooSimilar(player.getUniqueId(), message)) {
-            event.setCancelled(true);
+        // CHECK 6: Similarity filter - also records the message for future checks if it passes
+        if (similarityEnabled && similarityFilter.checkAndRecord(player.getUniqueId(), message)) {
             player.sendMessage(Component.text("Message blocked: too similar to recent messages.", NamedTextColor.RED));
-            return;
+            return Verdict.SIMILAR;
         }
         
-        // ALL CHECKS PASSED - Record message for future similarity checks
-        recordMessageIfEnabled(player, message);
+        // ALL CHECKS PASSED
+        return Verdict.ALLOW;
+    }
+    
+    private static InetAddress getAddress(Player player) {
+        InetSocketAddress address = player.getAddress();
+        return address != null ? address.getAddress() : null;
     }
     
     private void recordMessageIfEnabled(Player player, String message) {
@@ -169,13 +437,68 @@ public class GuardDogModule implements Listener {
         }
     }
     
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        if (!enabled) return;
+        
+        Player player = event.getPlayer();
+        InetAddress address = getAddress(player);
+        restorePlayer(player, address);
+        
+        if (lockdownEnabled) {
+            lockdownMonitor.recordJoin(address != null ? AddressKeys.addressKey(address) : 0, captchaManager.isVerified(player));
+        }
+    }
+    
+    /**
+     * Reconnecting, or a fresh account on the same address, does not reset rate limits and history.
+     */
+    private void restorePlayer(Player player, InetAddress address) {
+        if (!reconnectEnabled) return;
+        
+        ReconnectCache.State state = reconnectCache.take(player.getUniqueId(), address != null ? AddressKeys.addressKey(address) : 0);
+        if (state != null) {
+            rateLimiter.restorePlayer(player.getUniqueId(), state.rateArrivalTime());
+            lockdownRateLimiter.restorePlayer(player.getUniqueId(), state.lockdownArrivalTime());
+            if (state.history() != null) {
+                similarityFilter.restorePlayer(player.getUniqueId(), state.history());
+            }
+        }
+    }
+    
+    // Permission plugins resend the command tree after a permission change, e.g. a new bypass permission
+    @EventHandler
+    public void onPlayerCommandSend(PlayerCommandSendEvent event) {
+        if (!enabled) return;
+        
+        trustTracker.removePlayer(event.getPlayer().getUniqueId());
+    }
+    
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         if (!enabled) return;
         
-        Player player = event.getPlayer();
-        rateLimiter.removePlayer(player.getUniqueId());
-        similarityFilter.removePlayer(player.getUniqueId());
+        departPlayer(event.getPlayer(), reconnectEnabled);
+    }
+    
+    /**
+     * Drops a player's state, keeping rate limits and history in the reconnect cache if requested.
+     */
+    private void departPlayer(Player player, boolean keep) {
+        long rateArrivalTime = rateLimiter.detachPlayer(player.getUniqueId());
+        long lockdownArrivalTime = lockdownRateLimiter.detachPlayer(player.getUniqueId());
+        HistoryRing history = similarityFilter.detachPlayer(player.getUniqueId());
+        trustTracker.removePlayer(player.getUniqueId());
+        fanOutDetector.removePlayer(player.getUniqueId());
+        if (shadowEvaluator != null) {
+            shadowEvaluator.removePlayer(player.getUniqueId());
+        }
+        
+        if (keep) {
+            InetAddress address = getAddress(player);
+            reconnectCache.put(player.getUniqueId(), address != null ? AddressKeys.addressKey(address) : 0,
+                new ReconnectCache.State(rateArrivalTime, lockdownArrivalTime, history, System.nanoTime()));
+        }
     }
     
     /**
@@ -199,6 +522,35 @@ public class GuardDogModule implements Listener {
         return similarityFilter;
     }
     
+    /**
+     * Gets the whisper fan-out detector for external access.
+     */
+    public FanOutDetector getFanOutDetector() {
+        return fanOutDetector;
+    }
+    
+    /**
+     * Gets the spam wave detector for external access.
+     */
+    public WaveDetector getWaveDetector() {
+        return waveDetector;
+    }
+    
+    /**
+     * Gets the shadow evaluator for external access.
+     * @return The evaluator, or null if shadow mode is disabled
+     */
+    public ShadowEvaluator getShadowEvaluator() {
+        return shadowEvaluator;
+    }
+    
+    /**
+     * Gets the reconnect cache for external access.
+     */
+    public ReconnectCache getReconnectCache() {
+        return reconnectCache;
+    }
+    
     /**
      * Gets the bot heuristics for external access.
      */
@@ -206,6 +558,13 @@ public class GuardDogModule implements Listener {
         return botHeuristics;
     }
     
+    /**
+     * Gets the lockdown monitor for external access.
+     */
+    public LockdownMonitor getLockdownMonitor() {
+        return lockdownMonitor;
+    }
+    
     /**
      * Checks if GuardDog is enabled.
      */
@@ -0,0 +1,181 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiPredicate;
+
+/**
+ * Fixed-capacity ring of normalized messages with lock-free append.
+ * Every message gets a sequence number when it is appended. A lookup only compares against
+ * messages with a lower sequence, which makes append-then-check atomic: of two concurrent
+ * identical messages, the later one always sees the earlier one.
+ * A retracted message gives its slot back if nothing was appended after it, so blocked
+ * messages do not push the messages they were blocked for out of the ring.
+ */
+final class HistoryRing {
+
+    // Appends publish right after claiming a sequence, so readers rarely wait at all
+    private static final int MAX_SPINS = 1 << 12;
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong nextSequence = new AtomicLong();
+    private final int mask;
+
+    HistoryRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Appends a message.
+     * @param message The normalized message
+     * @return The message's sequence number
+     */
+    long append(String message) {
+        long sequence = nextSequence.getAndIncrement();
+        Entry entry = new Entry(sequence, message);
+        Entry displaced = entries.getAndSet((int) (sequence & mask), entry);
+        if (displaced != null) {
+            // Its sequence is taken, so it can no longer give its slot back
+            displaced.displaced = null;
+        }
+        entry.displaced = displaced;
+        return sequence;
+    }
+
+    /**
+     * Sequence number the next appended message will get.
+     */
+    long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Checks the newest messages before a sequence number. Retracted messages are skipped
+     * and do not count towards the limit.
+     * @param message The normalized message
+     * @param before Only messages with a lower sequence are compared
+     * @param count How many messages to compare at most
+     * @param matcher Verifies a candidate, called as (message, candidate)
+     * @return true if a message passed the matcher
+     */
+    boolean anyMatch(String message, long before, int count, BiPredicate<String, String> matcher) {
+        long end = Math.max(0, before - (mask + 1));
+        int compared = 0;
+        for (long sequence = before - 1; sequence >= end && compared < count; sequence--) {
+            Entry entry = await(sequence);
+            if (entry == null || entry.rejected) {
+                continue;
+            }
+            if (matcher.test(message, entry.message)) {
+                return true;
+            }
+            compared++;
+        }
+        return false;
+    }
+
+    /**
+     * Hides a message from future lookups, e.g. after it was blocked.
+     * If it is still the newest message, its slot goes back to the message it replaced.
+     * @param sequence The message's sequence number
+     */
+    void retract(long sequence) {
+        int index = (int) (sequence & mask);
+        Entry entry = entries.get(index);
+        if (entry == null || entry.sequence != sequence) {
+            return;
+        }
+
+        entry.rejected = true;
+        if (nextSequence.compareAndSet(sequence + 1, sequence)) {
+            // Fails if the sequence was already claimed again, then that append keeps the slot
+            entries.compareAndSet(index, entry, entry.displaced);
+        }
+    }
+
+    /**
+     * Copies the messages that were not retracted into a new ring of the same capacity.
+     */
+    HistoryRing copy() {
+        HistoryRing ring = new HistoryRing(mask + 1);
+        long end = nextSequence.get();
+        for (long sequence = Math.max(0, end - (mask + 1)); sequence < end; sequence++) {
+            Entry entry = entries.get((int) (sequence & mask));
+            if (entry != null && entry.sequence == sequence && !entry.rejected) {
+                ring.append(entry.message);
+            }
+        }
+        return ring;
+    }
+
+    /**
+     * Writes the capacity and the messages that were not retracted, oldest first.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        long end = nextSequence.get();
+        long start = Math.max(0, end - (mask + 1));
+        out.writeInt(mask + 1);
+
+        int count = 0;
+        Entry[] live = new Entry[mask + 1];
+        for (long sequence = start; sequence < end; sequence++) {
+            Entry entry = entries.get((int) (sequence & mask));
+            if (entry != null && entry.sequence == sequence && !entry.rejected) {
+                live[count++] = entry;
+            }
+        }
+
+        out.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            out.writeUTF(live[i].message);
+        }
+    }
+
+    /**
+     * Reads a ring written by {@link #writeTo}.
+     */
+    static HistoryRing readFrom(DataInputStream in) throws IOException {
+        HistoryRing ring = new HistoryRing(in.readInt());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            ring.append(in.readUTF());
+        }
+        return ring;
+    }
+
+    /**
+     * Gets the entry of a claimed sequence, waiting briefly if its append is still in flight.
+     * @return The entry, or null if it was already overwritten or never showed up
+     */
+    private Entry await(long sequence) {
+        int index = (int) (sequence & mask);
+        for (int spins = 0; ; spins++) {
+            Entry entry = entries.get(index);
+            if (entry != null && entry.sequence >= sequence) {
+                return entry.sequence == sequence ? entry : null;
+            }
+            if (spins >= MAX_SPINS) {
+                return null;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final String message;
+        volatile boolean rejected;
+        // The entry this one replaced, restored if this one is retracted right away
+        Entry displaced;
+
+        Entry(long sequence, String message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+}
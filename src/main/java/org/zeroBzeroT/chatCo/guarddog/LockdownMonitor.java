@@ -0,0 +1,163 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Watches join and chat flood telemetry and switches GuardDog into lockdown during a bot attack.
+ * Keeps sliding-window counts of joins, first-time IPs, captcha failures and blocked messages.
+ * Lockdown starts as soon as one count reaches its threshold and ends once every count has
+ * stayed below half of its threshold for the relax period. Every transition is logged.
+ */
+public class LockdownMonitor {
+
+    // Lossy direct-mapped set of recently seen addresses, for counting first-time IPs in fixed memory
+    private static final int SEEN_ADDRESSES = 1 << 16;
+
+    private final JavaPlugin plugin;
+    private final Consumer<Boolean> onTransition;
+
+    private final SlidingWindowCounter joins;
+    private final SlidingWindowCounter firstTimeIps;
+    private final SlidingWindowCounter captchaFailures;
+    private final SlidingWindowCounter blockedMessages;
+    private final AtomicLongArray seenAddresses = new AtomicLongArray(SEEN_ADDRESSES);
+
+    private final int joinThreshold;
+    private final int firstTimeIpThreshold;
+    private final int captchaFailureThreshold;
+    private final int blockedMessageThreshold;
+    private final long relaxAfterMs;
+
+    private volatile boolean active;
+    private long calmSince;
+    private ScheduledTask task;
+
+    public LockdownMonitor(JavaPlugin plugin, FileConfiguration config, Consumer<Boolean> onTransition) {
+        this.plugin = plugin;
+        this.onTransition = onTransition;
+
+        int windowSeconds = config.getInt("GuardDog.lockdown.window_seconds", 60);
+        this.joins = new SlidingWindowCounter(windowSeconds);
+        this.firstTimeIps = new SlidingWindowCounter(windowSeconds);
+        this.captchaFailures = new SlidingWindowCounter(windowSeconds);
+        this.blockedMessages = new SlidingWindowCounter(windowSeconds);
+
+        this.joinThreshold = config.getInt("GuardDog.lockdown.joins", 0);
+        this.firstTimeIpThreshold = config.getInt("GuardDog.lockdown.first_time_ips", 15);
+        this.captchaFailureThreshold = config.getInt("GuardDog.lockdown.captcha_failures", 10);
+        this.blockedMessageThreshold = config.getInt("GuardDog.lockdown.blocked_messages", 50);
+        this.relaxAfterMs = config.getInt("GuardDog.lockdown.relax_after_seconds", 120) * 1000L;
+    }
+
+    /**
+     * Starts evaluating the counters once per second.
+     */
+    public void start() {
+        task = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, t -> evaluate(), 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops evaluating. Does not lift an active lockdown; the next monitor starts fresh.
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    /**
+     * Counts a join, and a first-time IP if the address is neither verified nor seen recently.
+     * @param addressKey The packed address of the joining player, or 0 if unknown
+     * @param verified Whether the address passed the captcha before
+     */
+    public void recordJoin(long addressKey, boolean verified) {
+        joins.increment();
+
+        if (addressKey != 0 && !verified) {
+            int slot = (int) mix(addressKey) & (SEEN_ADDRESSES - 1);
+            if (seenAddresses.getAndSet(slot, addressKey) != addressKey) {
+                firstTimeIps.increment();
+            }
+        }
+    }
+
+    /**
+     * Counts a failed captcha attempt.
+     */
+    public void recordCaptchaFailure() {
+        captchaFailures.increment();
+    }
+
+    /**
+     * Counts a message blocked by GuardDog.
+     */
+    public void recordBlockedMessage() {
+        blockedMessages.increment();
+    }
+
+    /**
+     * Checks if lockdown is active.
+     */
+    public boolean isActive() {
+        return active;
+    }
+
+    private void evaluate() {
+        long joinCount = joins.sum();
+        long firstTimeIpCount = firstTimeIps.sum();
+        long captchaFailureCount = captchaFailures.sum();
+        long blockedMessageCount = blockedMessages.sum();
+        String counts = "joins=" + joinCount + ", first-time IPs=" + firstTimeIpCount
+            + ", captcha failures=" + captchaFailureCount + ", blocked messages=" + blockedMessageCount;
+
+        if (!active) {
+            if (reached(joinCount, joinThreshold, 1) || reached(firstTimeIpCount, firstTimeIpThreshold, 1)
+                    || reached(captchaFailureCount, captchaFailureThreshold, 1) || reached(blockedMessageCount, blockedMessageThreshold, 1)) {
+                active = true;
+                calmSince = 0;
+                plugin.getLogger().warning("[GuardDog] Lockdown enabled (" + counts + ")");
+                onTransition.accept(true);
+            }
+            return;
+        }
+
+        // Hysteresis: only relax once everything is well below the thresholds
+        boolean calm = !reached(joinCount, joinThreshold, 2) && !reached(firstTimeIpCount, firstTimeIpThreshold, 2)
+            && !reached(captchaFailureCount, captchaFailureThreshold, 2) && !reached(blockedMessageCount, blockedMessageThreshold, 2);
+        long now = System.currentTimeMillis();
+
+        if (!calm) {
+            calmSince = 0;
+        } else if (calmSince == 0) {
+            calmSince = now;
+        } else if (now - calmSince >= relaxAfterMs) {
+            active = false;
+            plugin.getLogger().info("[GuardDog] Lockdown lifted (" + counts + ")");
+            onTransition.accept(false);
+        }
+    }
+
+    /**
+     * Checks a count against a fraction of its threshold. A threshold of 0 or less disables the counter.
+     */
+    private static boolean reached(long count, int threshold, int divisor) {
+        return threshold > 0 && count * divisor >= threshold;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
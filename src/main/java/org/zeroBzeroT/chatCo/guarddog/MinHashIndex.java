@@ -0,0 +1,321 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiPredicate;
+
+/**
+ * Locality-sensitive index over a large window of recent messages.
+ * Each message is cut into character 3-grams and summarised by a MinHash signature,
+ * which is split into bands. Messages sharing a band land in the same bucket, so a lookup
+ * only verifies the few messages that share a bucket instead of scanning the whole window.
+ *
+ * The newest few messages are always compared directly, so recent repeats are never missed.
+ * Short messages ("gg", "lol") are only compared with those: everyone says them, so matching them
+ * across the whole window would block common replies for everybody.
+ * Messages live in a fixed ring and expire by age or when the ring wraps around.
+ * Adding and looking up are lock-free; bucket heads are swapped with CAS.
+ */
+final class MinHashIndex {
+
+    private static final int BANDS = 16;
+    private static final int ROWS = 2;
+    private static final int HASHES = BANDS * ROWS;
+    // Bucket chains are walked newest first; older candidates are unlikely to matter
+    private static final int MAX_CHAIN = 32;
+    // Retracted messages left in a chain do not count towards MAX_CHAIN, but the walk stops after this many links
+    private static final int MAX_LINKS = MAX_CHAIN * 8;
+
+    private static final long[] MULTIPLIERS = new long[HASHES];
+    private static final long[] INCREMENTS = new long[HASHES];
+
+    static {
+        long seed = 0x2545F4914F6CDD1DL;
+        for (int i = 0; i < HASHES; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            MULTIPLIERS[i] = seed | 1;
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            INCREMENTS[i] = seed;
+        }
+    }
+
+    private static final ThreadLocal<int[]> MIN_SCRATCH = ThreadLocal.withInitial(() -> new int[HASHES]);
+    // Appends publish right after claiming a sequence, so readers rarely wait at all
+    private static final int MAX_SPINS = 1 << 12;
+
+    private final int mask;
+    private final int exactRecent;
+    private final int minIndexedLength;
+    private final long maxAgeMs;
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong nextSequence = new AtomicLong();
+    // Per band and bucket: the sequence + 1 of the newest entry
+    private final AtomicLongArray heads;
+    private final int bucketMask;
+
+    /**
+     * @param capacity Number of messages in the window
+     * @param exactRecent Number of newest messages that are always compared directly
+     * @param minIndexedLength Shorter messages are only compared with the newest ones
+     * @param maxAgeMs Older messages are forgotten
+     */
+    MinHashIndex(int capacity, int exactRecent, int minIndexedLength, long maxAgeMs) {
+        int size = Integer.highestOneBit(Math.max(2, Math.max(capacity, exactRecent + 1) - 1)) << 1;
+        this.mask = size - 1;
+        this.exactRecent = exactRecent;
+        this.minIndexedLength = minIndexedLength;
+        this.maxAgeMs = maxAgeMs;
+        this.entries = new AtomicReferenceArray<>(size);
+        this.heads = new AtomicLongArray(size * BANDS);
+        this.bucketMask = size - 1;
+    }
+
+    /**
+     * Checks if the index holds a live message that matches.
+     * Only messages added before the given sequence are compared, so a message that was just
+     * added can check itself against everything that came before it.
+     * @param message The normalized message
+     * @param before Only messages with a lower sequence are compared
+     * @param now The current time in milliseconds
+     * @param matcher Verifies a candidate, called as (message, candidate)
+     * @return true if a candidate passed the matcher
+     */
+    boolean containsMatch(String message, long before, long now, BiPredicate<String, String> matcher) {
+        // Newest messages: compare all of them; blocked ones do not count, so a blocked wave cannot push out its original
+        long oldest = Math.max(0, before - (mask + 1));
+        long recentStart = before;
+        for (int compared = 0; recentStart > oldest && compared < exactRecent; ) {
+            Entry entry = await(--recentStart);
+            if (entry == null || entry.rejected) {
+                continue;
+            }
+            if (isLive(entry, now) && matcher.test(message, entry.message)) {
+                return true;
+            }
+            compared++;
+        }
+
+        if (message.length() < minIndexedLength) {
+            return false;
+        }
+
+        // Older messages: only the ones sharing a bucket
+        Entry self = entries.get((int) (before & mask));
+        long[] keys = self != null && self.sequence == before ? self.bandKeys : signature(message);
+        for (int band = 0; band < BANDS; band++) {
+            long link = heads.get(band * (bucketMask + 1) + bucket(keys[band], band));
+
+            for (int walked = 0, links = 0; link > 0 && walked < MAX_CHAIN && links < MAX_LINKS; links++) {
+                long sequence = link - 1;
+                Entry entry = entries.get((int) (sequence & mask));
+                if (entry == null || entry.sequence != sequence || now - entry.time > maxAgeMs) {
+                    break; // Overwritten or expired, and everything further down is older
+                }
+                link = entry.previous[band];
+                if (entry.rejected) {
+                    continue;
+                }
+                walked++;
+
+                if (sequence < recentStart
+                        && entry.bandKeys[band] == keys[band]
+                        && !matchedEarlierBand(keys, entry.bandKeys, band)
+                        && matcher.test(message, entry.message)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Adds a message, overwriting the oldest one when the ring is full. Lock-free.
+     * @param message The normalized message
+     * @param now The current time in milliseconds
+     * @return The message's sequence number
+     */
+    long add(String message, long now) {
+        long[] keys = signature(message);
+        long sequence = nextSequence.getAndIncrement();
+        Entry entry = new Entry(sequence, message, now, keys);
+        entries.set((int) (sequence & mask), entry);
+        if (message.length() < minIndexedLength) {
+            return sequence;
+        }
+
+        for (int band = 0; band < BANDS; band++) {
+            int head = band * (bucketMask + 1) + bucket(keys[band], band);
+            long previous;
+            do {
+                previous = heads.get(head);
+                // Written before the head is published, so walkers always see it
+                entry.previous[band] = previous;
+                // A newer message already took the bucket: keep chains newest first and skip this band
+            } while (previous < sequence + 1 && !heads.compareAndSet(head, previous, sequence + 1));
+        }
+        return sequence;
+    }
+
+    /**
+     * Sequence number the next added message will get.
+     */
+    long nextSequence() {
+        return nextSequence.get();
+    }
+
+    /**
+     * Hides a message from future lookups, e.g. after it was blocked.
+     * Where it still heads a bucket chain it is unlinked, so blocked copies do not pile up
+     * in front of the message they were blocked for.
+     * @param sequence The message's sequence number
+     */
+    void retract(long sequence) {
+        Entry entry = entries.get((int) (sequence & mask));
+        if (entry == null || entry.sequence != sequence) {
+            return;
+        }
+
+        entry.rejected = true;
+        for (int band = 0; band < BANDS; band++) {
+            // Fails if a newer message took the bucket since; lookups then skip this one
+            heads.compareAndSet(band * (bucketMask + 1) + bucket(entry.bandKeys[band], band), sequence + 1, entry.previous[band]);
+        }
+    }
+
+    /**
+     * Writes the live messages with their times, oldest first.
+     * @param now The current time in milliseconds
+     */
+    void writeTo(DataOutputStream out, long now) throws IOException {
+        long end = nextSequence.get();
+        List<Entry> live = new ArrayList<>();
+        for (long sequence = Math.max(0, end - (mask + 1)); sequence < end; sequence++) {
+            Entry entry = entries.get((int) (sequence & mask));
+            if (entry != null && entry.sequence == sequence && isLive(entry, now)) {
+                live.add(entry);
+            }
+        }
+
+        out.writeInt(live.size());
+        for (Entry entry : live) {
+            out.writeLong(entry.time);
+            out.writeUTF(entry.message);
+        }
+    }
+
+    /**
+     * Adds the messages written by {@link #writeTo}, keeping their original times.
+     */
+    void readFrom(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            long time = in.readLong();
+            add(in.readUTF(), time);
+        }
+    }
+
+    private boolean isLive(Entry entry, long now) {
+        return !entry.rejected && now - entry.time <= maxAgeMs;
+    }
+
+    /**
+     * Gets the entry of a claimed sequence, waiting briefly if its add is still in flight.
+     * @return The entry, or null if it was already overwritten or never showed up
+     */
+    private Entry await(long sequence) {
+        int index = (int) (sequence & mask);
+        for (int spins = 0; ; spins++) {
+            Entry entry = entries.get(index);
+            if (entry != null && entry.sequence >= sequence) {
+                return entry.sequence == sequence ? entry : null;
+            }
+            if (spins >= MAX_SPINS) {
+                return null;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    // A candidate sharing an earlier band was already verified in that band
+    private static boolean matchedEarlierBand(long[] keys, long[] candidateKeys, int band) {
+        for (int earlier = 0; earlier < band; earlier++) {
+            if (candidateKeys[earlier] == keys[earlier]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int bucket(long key, int band) {
+        return (int) mix(key + band * 0x9E3779B97F4A7C15L) & bucketMask;
+    }
+
+    /**
+     * Computes the band keys of a message.
+     */
+    private static long[] signature(String message) {
+        int[] mins = MIN_SCRATCH.get();
+        Arrays.fill(mins, Integer.MAX_VALUE);
+
+        int length = message.length();
+        int shingles = Math.max(1, length - 2);
+        for (int i = 0; i < shingles; i++) {
+            long shingle = 0;
+            for (int j = i; j < Math.min(i + 3, length); j++) {
+                shingle = (shingle << 16) | message.charAt(j);
+            }
+            long base = mix(shingle);
+
+            for (int h = 0; h < HASHES; h++) {
+                int value = (int) ((MULTIPLIERS[h] * base + INCREMENTS[h]) >>> 32);
+                if (value < mins[h]) {
+                    mins[h] = value;
+                }
+            }
+        }
+
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            long key = 0;
+            for (int row = 0; row < ROWS; row++) {
+                key = (key << 32) | (mins[band * ROWS + row] & 0xFFFFFFFFL);
+            }
+            keys[band] = key;
+        }
+        return keys;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private static final class Entry {
+        final long sequence;
+        final String message;
+        final long time;
+        final long[] bandKeys;
+        // Per band: the sequence + 1 of the previous entry in the same bucket
+        final long[] previous = new long[BANDS];
+        volatile boolean rejected;
+
+        Entry(long sequence, String message, long time, long[] bandKeys) {
+            this.sequence = sequence;
+            this.message = message;
+            this.time = time;
+            this.bandKeys = bandKeys;
+        }
+    }
+}
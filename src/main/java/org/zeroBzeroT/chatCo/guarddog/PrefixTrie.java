@@ -0,0 +1,218 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.Arrays;
+
+/**
+ * Binary trie of network prefixes over the 128-bit IPv6 form of addresses (see {@link AddressKeys#high}).
+ * Lookups return the value of the longest matching prefix and take at most one step per prefix bit.
+ * Nodes are stored in primitive arrays. Built once, then only read, so lookups need no locking
+ * as long as the trie is published safely.
+ */
+final class PrefixTrie {
+
+    static final byte NONE = 0;
+    static final byte ALLOW = 1;
+    static final byte DENY = 2;
+
+    // Two child indexes per node; 0 means no child, since the root is never a child
+    private int[] children = new int[32];
+    private byte[] values = new byte[16];
+    private int nodes = 1;
+
+    /**
+     * Adds a network, replacing the value of an identical prefix.
+     * @param high The high 64 bits of the network address
+     * @param low The low 64 bits of the network address
+     * @param prefixLength The number of leading bits that must match, 0 to 128
+     * @param value The value returned for addresses in the network
+     */
+    void insert(long high, long low, int prefixLength, byte value) {
+        int node = 0;
+        for (int bit = 0; bit < prefixLength; bit++) {
+            int index = node * 2 + bit(high, low, bit);
+            if (children[index] == 0) {
+                int child = allocate(); // May replace the children array
+                children[index] = child;
+            }
+            node = children[index];
+        }
+        values[node] = value;
+    }
+
+    /**
+     * Adds a network in CIDR notation, such as "10.0.0.0/8" or "2001:db8::/32". A bare address is a single host.
+     * @return false if the text is not a valid CIDR
+     */
+    boolean insert(String cidr, byte value) {
+        String text = cidr.trim();
+        int slash = text.indexOf('/');
+        String address = slash < 0 ? text : text.substring(0, slash);
+
+        // Parsed by hand: InetAddress would resolve anything that is not a literal through DNS
+        byte[] bytes = address.indexOf(':') >= 0 ? parseIpv6(address) : parseIpv4(address);
+        if (bytes == null) {
+            return false;
+        }
+
+        int maxLength = bytes.length * 8;
+        int prefixLength = slash < 0 ? maxLength : parseNumber(text.substring(slash + 1), 10, 3);
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            return false;
+        }
+
+        // IPv4 prefixes sit below the 96-bit IPv4-mapped prefix
+        int bits = bytes.length == 4 ? 96 + prefixLength : prefixLength;
+        insert(AddressKeys.maskHigh(AddressKeys.high(bytes), bits), AddressKeys.maskLow(AddressKeys.low(bytes), bits), bits, value);
+        return true;
+    }
+
+    /**
+     * Parses a dotted-quad IPv4 literal, four decimal parts from 0 to 255.
+     * @return The 4 address bytes, or null if the text is not such a literal
+     */
+    static byte[] parseIpv4(String text) {
+        String[] parts = text.split("\\.", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+
+        byte[] bytes = new byte[4];
+        for (int i = 0; i < 4; i++) {
+            int part = parseNumber(parts[i], 10, 3);
+            if (part < 0 || part > 255) {
+                return null;
+            }
+            bytes[i] = (byte) part;
+        }
+        return bytes;
+    }
+
+    /**
+     * Parses an IPv6 literal with up to one "::" and an optional dotted-quad tail, such as "::ffff:10.0.0.1".
+     * @return The 16 address bytes, or null if the text is not such a literal
+     */
+    static byte[] parseIpv6(String text) {
+        int gap = text.indexOf("::");
+        if (gap >= 0 && text.indexOf("::", gap + 1) >= 0) {
+            return null;
+        }
+
+        // A dotted quad can only end the address
+        if (gap >= 0 && text.lastIndexOf('.', gap) >= 0) {
+            return null;
+        }
+
+        int[] head = parseGroups(gap < 0 ? text : text.substring(0, gap));
+        int[] tail = gap < 0 ? new int[0] : parseGroups(text.substring(gap + 2));
+        if (head == null || tail == null) {
+            return null;
+        }
+        int groups = head.length + tail.length;
+        if (gap < 0 ? groups != 8 : groups > 7) {
+            return null;
+        }
+
+        byte[] bytes = new byte[16];
+        for (int i = 0; i < head.length; i++) {
+            bytes[i * 2] = (byte) (head[i] >>> 8);
+            bytes[i * 2 + 1] = (byte) head[i];
+        }
+        for (int i = 0; i < tail.length; i++) {
+            int at = 16 - (tail.length - i) * 2;
+            bytes[at] = (byte) (tail[i] >>> 8);
+            bytes[at + 1] = (byte) tail[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Parses colon-separated groups of up to 4 hex digits. The last group may be a dotted quad,
+     * which counts as two groups.
+     * @return The 16-bit groups, or null if the text is malformed
+     */
+    private static int[] parseGroups(String text) {
+        if (text.isEmpty()) {
+            return new int[0];
+        }
+
+        String[] parts = text.split(":", -1);
+        String last = parts[parts.length - 1];
+        byte[] ipv4 = last.indexOf('.') >= 0 ? parseIpv4(last) : null;
+        if (last.indexOf('.') >= 0 && ipv4 == null) {
+            return null;
+        }
+
+        int[] groups = new int[ipv4 != null ? parts.length + 1 : parts.length];
+        int hexParts = ipv4 != null ? parts.length - 1 : parts.length;
+        for (int i = 0; i < hexParts; i++) {
+            groups[i] = parseNumber(parts[i], 16, 4);
+            if (groups[i] < 0) {
+                return null;
+            }
+        }
+        if (ipv4 != null) {
+            groups[hexParts] = (ipv4[0] & 0xFF) << 8 | ipv4[1] & 0xFF;
+            groups[hexParts + 1] = (ipv4[2] & 0xFF) << 8 | ipv4[3] & 0xFF;
+        }
+        return groups;
+    }
+
+    /**
+     * Parses an unsigned number of 1 to maxDigits digits, without signs or spaces.
+     * @return The number, or -1 if the text is not such a number
+     */
+    private static int parseNumber(String text, int radix, int maxDigits) {
+        if (text.isEmpty() || text.length() > maxDigits) {
+            return -1;
+        }
+
+        int number = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int digit = c < 0x80 ? Character.digit(c, radix) : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            number = number * radix + digit;
+        }
+        return number;
+    }
+
+    /**
+     * Gets the value of the longest prefix that contains an address.
+     * @return The value, or {@link #NONE} if no network contains the address
+     */
+    byte lookup(long high, long low) {
+        byte value = values[0];
+        int node = 0;
+        for (int bit = 0; bit < 128; bit++) {
+            node = children[node * 2 + bit(high, low, bit)];
+            if (node == 0) {
+                break;
+            }
+            if (values[node] != NONE) {
+                value = values[node];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Checks if the trie has no networks.
+     */
+    boolean isEmpty() {
+        return nodes == 1 && values[0] == NONE;
+    }
+
+    private int allocate() {
+        if (nodes == values.length) {
+            values = Arrays.copyOf(values, nodes * 2);
+            children = Arrays.copyOf(children, nodes * 4);
+        }
+        return nodes++;
+    }
+
+    private static int bit(long high, long low, int bit) {
+        return (int) (bit < 64 ? high >>> (63 - bit) : low >>> (127 - bit)) & 1;
+    }
+}
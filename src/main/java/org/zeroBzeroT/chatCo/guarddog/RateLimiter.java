@@ -1,112 +1,332 @@
 package org.zeroBzeroT.chatCo.guarddog;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Token Bucket rate limiter for chat messages.
- * Allows short bursts but prevents sustained spam.
+ * Rate limiter for chat messages based on the Generic Cell Rate Algorithm (GCRA).
+ * Behaves like a token bucket that allows short bursts but prevents sustained spam,
+ * with exact fractional refill. Each player only has a "theoretical arrival time"
+ * that is updated lock-free, so async chat threads never contend on a monitor.
+ *
+ * On top of the per-player limit, shared limits can apply per IP address, per network
+ * (IPv4 /24, IPv6 /48) and for the whole server, so bots cannot reset their budget by
+ * reconnecting with fresh accounts. Address state lives in bounded tables that expire by themselves.
  */
 public class RateLimiter {
-    
-    private final Map<UUID, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * The layer that rejected a message.
+     */
+    public enum Limit {
+        PLAYER, IP, SUBNET, GLOBAL
+    }
+
+    /**
+     * Outcome of a layered rate limit check.
+     * @param limit The layer that rejected the message, null if allowed
+     * @param retryAfterNanos Nanoseconds until that layer allows a message again
+     */
+    public record Decision(Limit limit, long retryAfterNanos) {
+        public boolean allowed() {
+            return limit == null;
+        }
+
+        public long retryAfterSeconds() {
+            return (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+        }
+    }
+
+    /**
+     * Burst and refill rate of a shared layer. A max burst of 0 disables the layer.
+     */
+    public record LayerLimit(int maxBurst, double refillSeconds) {
+        public static final LayerLimit DISABLED = new LayerLimit(0, 0);
+
+        boolean enabled() {
+            return maxBurst > 0 && refillSeconds > 0;
+        }
+
+        long emissionIntervalNs() {
+            return (long) (refillSeconds * TimeUnit.SECONDS.toNanos(1));
+        }
+
+        long burstToleranceNs() {
+            return emissionIntervalNs() * maxBurst;
+        }
+    }
+
+    private static final Decision ALLOWED = new Decision(null, 0);
+
+    private final Map<UUID, AtomicLong> arrivalTimes = new ConcurrentHashMap<>();
     private final int maxTokens;
-    private final long refillIntervalMs;
-    
+    // Time to regain one token
+    private final long emissionIntervalNs;
+    // How far the arrival time may run ahead of now (the burst size)
+    private final long burstToleranceNs;
+
+    private final LayerLimit ipLimit;
+    private final LayerLimit subnetLimit;
+    private final LayerLimit globalLimit;
+    private final GcraTable addressTable;
+    private final GcraTable networkTable;
+    private final AtomicLong globalArrivalTime = new AtomicLong(System.nanoTime());
+
     public RateLimiter(int maxTokens, int refillSeconds) {
+        this(maxTokens, refillSeconds, LayerLimit.DISABLED, LayerLimit.DISABLED, LayerLimit.DISABLED, 0);
+    }
+
+    public RateLimiter(int maxTokens, int refillSeconds, LayerLimit ipLimit, LayerLimit subnetLimit, LayerLimit globalLimit, int maxTrackedAddresses) {
         this.maxTokens = maxTokens;
-        this.refillIntervalMs = refillSeconds * 1000L;
+        this.emissionIntervalNs = TimeUnit.SECONDS.toNanos(refillSeconds);
+        this.burstToleranceNs = emissionIntervalNs * maxTokens;
+        this.ipLimit = ipLimit;
+        this.subnetLimit = subnetLimit;
+        this.globalLimit = globalLimit;
+        this.addressTable = ipLimit.enabled() ? new GcraTable(maxTrackedAddresses) : null;
+        this.networkTable = subnetLimit.enabled() ? new GcraTable(maxTrackedAddresses) : null;
     }
-    
+
     /**
      * Attempts to consume a token for the given player.
      * @param playerId The player's UUID
      * @return true if message is allowed, false if rate limited
      */
     public boolean tryConsume(UUID playerId) {
-        TokenBucket bucket = buckets.computeIfAbsent(playerId, 
-            k -> new TokenBucket(maxTokens, refillIntervalMs));
-        return bucket.tryConsume();
+        return tryConsume(playerId, System.nanoTime());
     }
-    
+
+    /**
+     * Attempts to consume a token for the given player at a given time, e.g. when replaying messages later.
+     * @param playerId The player's UUID
+     * @param now The nanoTime the message was sent
+     * @return true if message is allowed, false if rate limited
+     */
+    boolean tryConsume(UUID playerId, long now) {
+        AtomicLong arrivalTime = arrivalTimes.computeIfAbsent(playerId, k -> new AtomicLong(now));
+        return consume(arrivalTime, emissionIntervalNs, burstToleranceNs, now) == 0;
+    }
+
+    /**
+     * Checks all layers for a message, narrowest first: player, IP, network, global.
+     * Stops at the first layer that rejects the message and gives back what the layers before it consumed,
+     * so a message that is not sent costs nothing.
+     * @param playerId The player's UUID
+     * @param address The player's address, or null to skip the address layers
+     * @return The decision, with the rejecting layer and its retry-after time
+     */
+    public Decision tryConsume(UUID playerId, InetAddress address) {
+        return tryConsume(playerId, address, System.nanoTime());
+    }
+
+    /**
+     * Checks all layers for a message at a given time, e.g. when replaying messages later.
+     * @param playerId The player's UUID
+     * @param address The player's address, or null to skip the address layers
+     * @param now The nanoTime the message was sent
+     * @return The decision, with the rejecting layer and its retry-after time
+     */
+    Decision tryConsume(UUID playerId, InetAddress address, long now) {
+        if (!tryConsume(playerId, now)) {
+            return new Decision(Limit.PLAYER, nanosUntilRefill(playerId, now));
+        }
+
+        long addressKey = 0;
+        long networkKey = 0;
+        boolean consumedAddress = false;
+        boolean consumedNetwork = false;
+        Decision decision = ALLOWED;
+
+        if (address != null) {
+            if (addressTable != null) {
+                addressKey = AddressKeys.addressKey(address);
+                long wait = addressTable.tryConsume(addressKey, ipLimit.emissionIntervalNs(), ipLimit.burstToleranceNs(), now);
+                if (wait > 0) {
+                    decision = new Decision(Limit.IP, wait);
+                } else {
+                    consumedAddress = true;
+                }
+            }
+            if (decision.allowed() && networkTable != null) {
+                networkKey = AddressKeys.networkKey(address);
+                long wait = networkTable.tryConsume(networkKey, subnetLimit.emissionIntervalNs(), subnetLimit.burstToleranceNs(), now);
+                if (wait > 0) {
+                    decision = new Decision(Limit.SUBNET, wait);
+                } else {
+                    consumedNetwork = true;
+                }
+            }
+        }
+
+        if (decision.allowed() && globalLimit.enabled()) {
+            long wait = consume(globalArrivalTime, globalLimit.emissionIntervalNs(), globalLimit.burstToleranceNs(), now);
+            if (wait > 0) {
+                decision = new Decision(Limit.GLOBAL, wait);
+            }
+        }
+
+        if (!decision.allowed()) {
+            AtomicLong arrivalTime = arrivalTimes.get(playerId);
+            if (arrivalTime != null) {
+                arrivalTime.addAndGet(-emissionIntervalNs);
+            }
+            if (consumedAddress) {
+                addressTable.refund(addressKey, ipLimit.emissionIntervalNs(), now);
+            }
+            if (consumedNetwork) {
+                networkTable.refund(networkKey, subnetLimit.emissionIntervalNs(), now);
+            }
+        }
+        return decision;
+    }
+
+    /**
+     * Number of tracked addresses and networks evicted early to keep the tables bounded.
+     */
+    public long getAddressEvictions() {
+        return (addressTable != null ? addressTable.getEvictions() : 0) + (networkTable != null ? networkTable.getEvictions() : 0);
+    }
+
     /**
      * Gets the remaining tokens for a player.
      * @param playerId The player's UUID
      * @return Number of remaining tokens
      */
     public int getRemainingTokens(UUID playerId) {
-        TokenBucket bucket = buckets.get(playerId);
-        if (bucket == null) {
+        AtomicLong arrivalTime = arrivalTimes.get(playerId);
+        if (arrivalTime == null) {
             return maxTokens;
         }
-        bucket.refill();
-        return bucket.tokens;
+        long now = System.nanoTime();
+        long used = later(arrivalTime.get(), now) - now;
+        return (int) Math.max(0, (burstToleranceNs - used) / emissionIntervalNs);
     }
-    
+
     /**
-     * Gets seconds until next token refill.
+     * Gets the time until the next message would be allowed.
      * @param playerId The player's UUID
-     * @return Seconds until refill, 0 if tokens available
+     * @return Nanoseconds until a token is available, 0 if tokens available
      */
-    public long getSecondsUntilRefill(UUID playerId) {
-        TokenBucket bucket = buckets.get(playerId);
-        if (bucket == null || bucket.tokens > 0) {
+    public long getNanosUntilRefill(UUID playerId) {
+        return nanosUntilRefill(playerId, System.nanoTime());
+    }
+
+    private long nanosUntilRefill(UUID playerId, long now) {
+        AtomicLong arrivalTime = arrivalTimes.get(playerId);
+        if (arrivalTime == null) {
             return 0;
         }
-        long elapsed = System.currentTimeMillis() - bucket.lastRefillTime;
-        long remaining = refillIntervalMs - elapsed;
-        return Math.max(0, remaining / 1000);
+        long next = later(arrivalTime.get(), now) + emissionIntervalNs;
+        return Math.max(0, next - now - burstToleranceNs);
+    }
+
+    /**
+     * Gets seconds until next token refill, rounded up.
+     * @param playerId The player's UUID
+     * @return Seconds until refill, 0 if tokens available
+     */
+    public long getSecondsUntilRefill(UUID playerId) {
+        long nanos = getNanosUntilRefill(playerId);
+        return (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
     }
-    
+
     /**
-     * Removes a player's bucket (on disconnect).
+     * Removes a player's state (on disconnect).
      * @param playerId The player's UUID
      */
     public void removePlayer(UUID playerId) {
-        buckets.remove(playerId);
+        arrivalTimes.remove(playerId);
+    }
+
+    /**
+     * Removes a player's state and returns it, for restoring after a reconnect.
+     * @param playerId The player's UUID
+     * @return The player's arrival time; a time not after now means a full bucket
+     */
+    public long detachPlayer(UUID playerId) {
+        AtomicLong arrivalTime = arrivalTimes.remove(playerId);
+        return arrivalTime != null ? arrivalTime.get() : System.nanoTime();
     }
-    
+
+    /**
+     * Restores a player's state. Keeps whichever arrival time is later, so a restore never refills a bucket.
+     * @param playerId The player's UUID
+     * @param arrivalTime An arrival time from {@link #detachPlayer}
+     */
+    public void restorePlayer(UUID playerId, long arrivalTime) {
+        arrivalTimes.computeIfAbsent(playerId, k -> new AtomicLong(System.nanoTime()))
+            .accumulateAndGet(arrivalTime, RateLimiter::later);
+    }
+
+    /**
+     * Writes the address, network and global limits for a warm start.
+     * Player limits travel with the {@link ReconnectCache}.
+     */
+    void writeSnapshot(DataOutputStream out, long now) throws IOException {
+        out.writeLong(globalArrivalTime.get() - now);
+        writeTable(out, addressTable, now);
+        writeTable(out, networkTable, now);
+    }
+
+    private static void writeTable(DataOutputStream out, GcraTable table, long now) throws IOException {
+        out.writeBoolean(table != null);
+        if (table != null) {
+            table.writeTo(out, now);
+        }
+    }
+
+    /**
+     * Restores the limits written by {@link #writeSnapshot}. Layers that are disabled now are skipped.
+     */
+    void readSnapshot(DataInputStream in, long base) throws IOException {
+        globalArrivalTime.accumulateAndGet(base + in.readLong(), RateLimiter::later);
+        readTable(in, addressTable, base);
+        readTable(in, networkTable, base);
+    }
+
+    private static void readTable(DataInputStream in, GcraTable table, long base) throws IOException {
+        if (!in.readBoolean()) {
+            return;
+        }
+        // Read into a throwaway table if the layer was disabled since, to get past its entries
+        (table != null ? table : new GcraTable(0)).readFrom(in, base);
+    }
+
     /**
      * Clears all rate limit data.
      */
     public void clear() {
-        buckets.clear();
-    }
-    
-    /**
-     * Internal token bucket implementation.
-     */
-    private static class TokenBucket {
-        private int tokens;
-        private final int maxTokens;
-        private final long refillIntervalMs;
-        private long lastRefillTime;
-        
-        TokenBucket(int maxTokens, long refillIntervalMs) {
-            this.maxTokens = maxTokens;
-            this.tokens = maxTokens;
-            this.refillIntervalMs = refillIntervalMs;
-            this.lastRefillTime = System.currentTimeMillis();
-        }
-        
-        synchronized boolean tryConsume() {
-            refill();
-            if (tokens > 0) {
-                tokens--;
-                return true;
+        arrivalTimes.clear();
+    }
+
+    /**
+     * Lock-free GCRA step on a single arrival time.
+     * @return 0 if allowed, otherwise nanoseconds until allowed
+     */
+    private static long consume(AtomicLong arrivalTime, long emissionIntervalNs, long burstToleranceNs, long now) {
+        while (true) {
+            long current = arrivalTime.get();
+            long next = later(current, now) + emissionIntervalNs;
+            if (next - now > burstToleranceNs) {
+                return next - now - burstToleranceNs;
             }
-            return false;
-        }
-        
-        synchronized void refill() {
-            long now = System.currentTimeMillis();
-            long elapsed = now - lastRefillTime;
-            int tokensToAdd = (int) (elapsed / refillIntervalMs);
-            if (tokensToAdd > 0) {
-                tokens = Math.min(maxTokens, tokens + tokensToAdd);
-                lastRefillTime = now;
+            if (arrivalTime.compareAndSet(current, next)) {
+                return 0;
             }
         }
     }
+
+    /**
+     * Returns the later of two nanoTime values, overflow safe.
+     */
+    private static long later(long a, long b) {
+        return a - b > 0 ? a : b;
+    }
 }
@@ -0,0 +1,206 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the rate limit and similarity state of players who quit, so reconnecting does not reset them.
+ * State is stored by UUID and by address, so a fresh account on the same address inherits it.
+ * Both maps are bounded in size and age; the oldest departures are evicted first.
+ */
+public class ReconnectCache {
+
+    /**
+     * State of a departed player.
+     * @param rateArrivalTime Arrival time in the rate limiter
+     * @param lockdownArrivalTime Arrival time in the lockdown rate limiter
+     * @param history Similarity history, null if the player had none
+     * @param departedAt nanoTime of the quit
+     */
+    record State(long rateArrivalTime, long lockdownArrivalTime, HistoryRing history, long departedAt) {
+    }
+
+    // Insertion order: a re-inserted key is removed first, so the head is always the oldest departure
+    private final LinkedHashMap<UUID, State> byPlayer = new LinkedHashMap<>();
+    private final LinkedHashMap<Long, State> byAddress = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long maxAgeNs;
+
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder restores = new LongAdder();
+
+    public ReconnectCache(int maxEntries, int maxAgeSeconds) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.maxAgeNs = TimeUnit.SECONDS.toNanos(maxAgeSeconds);
+    }
+
+    /**
+     * Stores the state of a departing player.
+     * @param playerId The player's UUID
+     * @param addressKey The player's packed address, or 0 if unknown
+     * @param state The player's state
+     */
+    synchronized void put(UUID playerId, long addressKey, State state) {
+        byPlayer.remove(playerId);
+        byPlayer.put(playerId, state);
+        trim(byPlayer, state.departedAt());
+
+        if (addressKey != 0) {
+            byAddress.remove(addressKey);
+            byAddress.put(addressKey, state);
+            trim(byAddress, state.departedAt());
+        }
+    }
+
+    /**
+     * Gets the state for a joining player: the player's own, or else the last one left from their address.
+     * The player's own entry is removed; an address entry stays for further accounts on the address.
+     * Every player gets a copy of the history, so accounts on one address never share a ring.
+     * @param playerId The player's UUID
+     * @param addressKey The player's packed address, or 0 if unknown
+     * @return The state, or null if none is stored or it expired
+     */
+    synchronized State take(UUID playerId, long addressKey) {
+        long now = System.nanoTime();
+        State state = byPlayer.remove(playerId);
+        if (state == null && addressKey != 0) {
+            state = byAddress.get(addressKey);
+        }
+
+        if (state == null) {
+            return null;
+        }
+        if (now - state.departedAt() >= maxAgeNs) {
+            expirations.increment();
+            return null;
+        }
+        restores.increment();
+        if (state.history() == null) {
+            return state;
+        }
+        return new State(state.rateArrivalTime(), state.lockdownArrivalTime(), state.history().copy(), state.departedAt());
+    }
+
+    /**
+     * Writes all stored state for a warm start, oldest first.
+     */
+    synchronized void writeSnapshot(DataOutputStream out, long now) throws IOException {
+        out.writeInt(byPlayer.size());
+        for (Map.Entry<UUID, State> entry : byPlayer.entrySet()) {
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            writeState(out, entry.getValue(), now);
+        }
+
+        out.writeInt(byAddress.size());
+        for (Map.Entry<Long, State> entry : byAddress.entrySet()) {
+            out.writeLong(entry.getKey());
+            writeState(out, entry.getValue(), now);
+        }
+    }
+
+    private static void writeState(DataOutputStream out, State state, long now) throws IOException {
+        out.writeLong(state.rateArrivalTime() - now);
+        out.writeLong(state.lockdownArrivalTime() - now);
+        out.writeLong(state.departedAt() - now);
+        out.writeBoolean(state.history() != null);
+        if (state.history() != null) {
+            state.history().writeTo(out);
+        }
+    }
+
+    /**
+     * Restores state written by {@link #writeSnapshot}. Time offline counts towards the maximum age.
+     */
+    synchronized void readSnapshot(DataInputStream in, long base) throws IOException {
+        int players = in.readInt();
+        for (int i = 0; i < players; i++) {
+            UUID playerId = new UUID(in.readLong(), in.readLong());
+            byPlayer.put(playerId, readState(in, base));
+        }
+
+        int addresses = in.readInt();
+        for (int i = 0; i < addresses; i++) {
+            long addressKey = in.readLong();
+            byAddress.put(addressKey, readState(in, base));
+        }
+
+        long now = System.nanoTime();
+        trim(byPlayer, now);
+        trim(byAddress, now);
+    }
+
+    private static State readState(DataInputStream in, long base) throws IOException {
+        long rateArrivalTime = base + in.readLong();
+        long lockdownArrivalTime = base + in.readLong();
+        long departedAt = base + in.readLong();
+        HistoryRing history = in.readBoolean() ? HistoryRing.readFrom(in) : null;
+        return new State(rateArrivalTime, lockdownArrivalTime, history, departedAt);
+    }
+
+    private void trim(LinkedHashMap<?, State> map, long now) {
+        Iterator<State> iterator = map.values().iterator();
+        while (iterator.hasNext()) {
+            State oldest = iterator.next();
+            if (now - oldest.departedAt() >= maxAgeNs) {
+                expirations.increment();
+            } else if (map.size() > maxEntries) {
+                evictions.increment();
+            } else {
+                return;
+            }
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Number of stored players.
+     */
+    public synchronized int getPlayerEntries() {
+        return byPlayer.size();
+    }
+
+    /**
+     * Number of stored addresses.
+     */
+    public synchronized int getAddressEntries() {
+        return byAddress.size();
+    }
+
+    /**
+     * Number of entries evicted early to stay within the size bound.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Number of entries dropped after reaching the maximum age.
+     */
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    /**
+     * Number of joins that got their state back.
+     */
+    public long getRestores() {
+        return restores.sum();
+    }
+
+    /**
+     * Removes all stored state.
+     */
+    public synchronized void clear() {
+        byPlayer.clear();
+        byAddress.clear();
+    }
+}
@@ -0,0 +1,249 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+import org.zeroBzeroT.chatCo.guarddog.GuardDogModule.Verdict;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs alternative GuardDog settings on the same messages as the live ones, without blocking anything.
+ * Each shadow config has its own rate limiter and similarity history, and judges heuristics with its
+ * own thresholds from the live movement and join data. It counts the messages it would block and
+ * keeps a few samples, so settings can be compared before they go live.
+ *
+ * Evaluation runs on a single background thread. Chat threads only queue the message; when the
+ * queue is full, messages are dropped from shadow evaluation and counted.
+ */
+public class ShadowEvaluator {
+
+    private static final int QUEUE_SIZE = 4096;
+    private static final int SAMPLES = 5;
+
+    /**
+     * A message a shadow config would have blocked.
+     * @param player The sender's name
+     * @param verdict The check that would have blocked it
+     * @param message The message
+     */
+    public record Sample(String player, Verdict verdict, String message) {
+    }
+
+    /**
+     * Results of one shadow config.
+     * @param name The config name
+     * @param evaluated Messages evaluated
+     * @param wouldBlock Messages the config would block
+     * @param extraBlocks Messages the config would block that the live settings allowed
+     * @param extraAllows Messages the live settings blocked that the config would allow
+     * @param byVerdict Would-block counts per check
+     * @param samples The newest would-block messages
+     */
+    public record Report(String name, long evaluated, long wouldBlock, long extraBlocks, long extraAllows,
+                         Map<Verdict, Long> byVerdict, List<Sample> samples) {
+    }
+
+    private final List<Shadow> shadows = new ArrayList<>();
+    private final LongAdder dropped = new LongAdder();
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param configs One section per shadow config; missing settings fall back to the live ones
+     * @param live The live GuardDog section
+     */
+    public ShadowEvaluator(ConfigurationSection configs, ConfigurationSection live) {
+        for (String name : configs.getKeys(false)) {
+            ConfigurationSection config = configs.getConfigurationSection(name);
+            if (config != null) {
+                shadows.add(new Shadow(name, config, live));
+            }
+        }
+
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(QUEUE_SIZE), runnable -> {
+            Thread thread = new Thread(runnable, "ChatCoPlus GuardDog Shadow");
+            thread.setDaemon(true);
+            return thread;
+        }, (task, pool) -> dropped.increment());
+    }
+
+    /**
+     * Queues a message for shadow evaluation. Only reads a few values on the calling thread.
+     * @param player The sender
+     * @param message The message
+     * @param liveVerdict The verdict of the live settings
+     * @param heuristics The live heuristics, for join time and movement
+     * @param trusted Whether the sender is trusted, so the heuristics are skipped like in the live checks
+     */
+    public void submit(Player player, String message, Verdict liveVerdict, BotHeuristics heuristics, boolean trusted) {
+        UUID playerId = player.getUniqueId();
+        String name = player.getName();
+        InetSocketAddress socketAddress = player.getAddress();
+        InetAddress address = socketAddress != null ? socketAddress.getAddress() : null;
+        long now = System.nanoTime();
+        long timeOnServerMs = heuristics.getTimeOnServerMs(playerId);
+        double distance = heuristics.getTotalDistance(playerId);
+
+        executor.execute(() -> {
+            for (Shadow shadow : shadows) {
+                shadow.evaluate(playerId, address, name, message, liveVerdict, trusted, now, timeOnServerMs, distance);
+            }
+        });
+    }
+
+    /**
+     * Forgets a player's rate limit and history in all shadow configs.
+     */
+    public void removePlayer(UUID playerId) {
+        executor.execute(() -> {
+            for (Shadow shadow : shadows) {
+                shadow.rateLimiter.removePlayer(playerId);
+                shadow.similarityFilter.removePlayer(playerId);
+            }
+        });
+    }
+
+    /**
+     * Gets the results of all shadow configs.
+     */
+    public List<Report> getReports() {
+        List<Report> reports = new ArrayList<>();
+        for (Shadow shadow : shadows) {
+            reports.add(shadow.report());
+        }
+        return reports;
+    }
+
+    /**
+     * Number of messages skipped because the evaluation queue was full.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Resets all counters and samples.
+     */
+    public void reset() {
+        for (Shadow shadow : shadows) {
+            shadow.reset();
+        }
+        dropped.reset();
+    }
+
+    /**
+     * Stops the background thread. Queued messages are discarded.
+     */
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static final class Shadow {
+        final String name;
+        final boolean heuristicsEnabled;
+        final double minMoveDistance;
+        final long minAccountAgeMs;
+        final boolean rateLimitEnabled;
+        final RateLimiter rateLimiter;
+        final boolean similarityEnabled;
+        final SimilarityFilter similarityFilter;
+
+        // Guarded by this; written by the shadow thread, read by report()
+        long evaluated;
+        long wouldBlock;
+        long extraBlocks;
+        long extraAllows;
+        final Map<Verdict, Long> byVerdict = new EnumMap<>(Verdict.class);
+        final ArrayDeque<Sample> samples = new ArrayDeque<>(SAMPLES);
+
+        Shadow(String name, ConfigurationSection config, ConfigurationSection live) {
+            this.name = name;
+            this.heuristicsEnabled = config.getBoolean("heuristics_enabled", live.getBoolean("heuristics.enabled", true));
+            this.minMoveDistance = config.getDouble("min_move_distance", live.getDouble("heuristics.min_move_distance", 2.0));
+            this.minAccountAgeMs = config.getInt("min_account_age_seconds", live.getInt("heuristics.min_account_age_seconds", 5)) * 1000L;
+            this.rateLimitEnabled = config.getBoolean("ratelimit_enabled", live.getBoolean("ratelimit.enabled", true));
+            this.rateLimiter = new RateLimiter(
+                config.getInt("max_burst", live.getInt("ratelimit.max_burst", 3)),
+                config.getInt("refill_seconds", live.getInt("ratelimit.refill_seconds", 2)),
+                layerLimit(config, live, "ip", 5, 1.0),
+                layerLimit(config, live, "subnet", 10, 0.5),
+                layerLimit(config, live, "global", 100, 0.02),
+                live.getInt("ratelimit.max_tracked_addresses", 65536));
+            this.similarityEnabled = config.getBoolean("similarity_enabled", live.getBoolean("similarity.enabled", true));
+            this.similarityFilter = new SimilarityFilter(
+                config.getDouble("similarity_threshold", live.getDouble("similarity.threshold", 0.85)),
+                live.getBoolean("similarity.check_global_chat", true),
+                live.getInt("similarity.global_window", 5000),
+                live.getInt("similarity.global_min_length", 12),
+                live.getInt("similarity.global_max_age_seconds", 900));
+        }
+
+        /**
+         * Reads a shared rate limit layer, e.g. ip_max_burst, falling back to the live ratelimit.ip section.
+         */
+        private static RateLimiter.LayerLimit layerLimit(ConfigurationSection config, ConfigurationSection live, String layer,
+                                                         int defaultBurst, double defaultRefillSeconds) {
+            String livePath = "ratelimit." + layer + ".";
+            return new RateLimiter.LayerLimit(
+                config.getInt(layer + "_max_burst", live.getInt(livePath + "max_burst", defaultBurst)),
+                config.getDouble(layer + "_refill_seconds", live.getDouble(livePath + "refill_seconds", defaultRefillSeconds)));
+        }
+
+        void evaluate(UUID playerId, InetAddress address, String player, String message, Verdict liveVerdict, boolean trusted,
+                      long now, long timeOnServerMs, double distance) {
+            Verdict verdict = Verdict.ALLOW;
+            if (!trusted && heuristicsEnabled && (timeOnServerMs < minAccountAgeMs || distance < minMoveDistance)) {
+                verdict = Verdict.HEURISTICS;
+            } else if (rateLimitEnabled && !rateLimiter.tryConsume(playerId, address, now).allowed()) {
+                verdict = Verdict.RATE_LIMITED;
+            } else if (similarityEnabled && similarityFilter.checkAndRecord(playerId, message)) {
+                verdict = Verdict.SIMILAR;
+            }
+
+            // Checks the shadow does not run (captcha, waves, fan-out) count as agreeing with live
+            boolean liveBlocked = liveVerdict == Verdict.HEURISTICS || liveVerdict == Verdict.RATE_LIMITED || liveVerdict == Verdict.SIMILAR;
+            synchronized (this) {
+                evaluated++;
+                if (verdict != Verdict.ALLOW) {
+                    wouldBlock++;
+                    byVerdict.merge(verdict, 1L, Long::sum);
+                    if (samples.size() == SAMPLES) {
+                        samples.removeFirst();
+                    }
+                    samples.addLast(new Sample(player, verdict, message));
+                    if (liveVerdict == Verdict.ALLOW) {
+                        extraBlocks++;
+                    }
+                } else if (liveBlocked) {
+                    extraAllows++;
+                }
+            }
+        }
+
+        synchronized Report report() {
+            List<Sample> newestFirst = new ArrayList<>(samples);
+            Collections.reverse(newestFirst);
+            return new Report(name, evaluated, wouldBlock, extraBlocks, extraAllows, new EnumMap<>(byVerdict), newestFirst);
+        }
+
+        synchronized void reset() {
+            evaluated = 0;
+            wouldBlock = 0;
+            extraBlocks = 0;
+            extraAllows = 0;
+            byVerdict.clear();
+            samples.clear();
+        }
+    }
+}
@@ -1,32 +1,65 @@
 package org.zeroBzeroT.chatCo.guarddog;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
 
 /**
  * Detects similar/repeated messages using Levenshtein distance.
  * Prevents spam that slightly alters each message.
+ * The distance is bounded by the threshold, so hopeless pairs are rejected early.
+ * Global history is a MinHash index, so a wide window costs little more than a narrow one.
+ * Short messages are only compared with the newest global messages.
+ * All history is kept in lock-free rings; chatting players never wait on each other.
  */
 public class SimilarityFilter {
     
-    private final Map<UUID, LinkedList<String>> playerHistory = new ConcurrentHashMap<>();
-    private final LinkedList<String> globalHistory = new LinkedList<>();
-    private final Object globalLock = new Object();
+    private final Map<UUID, HistoryRing> playerHistory = new ConcurrentHashMap<>();
+    private volatile MinHashIndex globalHistory;
+    private final BiPredicate<String, String> similarityMatcher = this::isSimilar;
     
     private final double threshold;
     private final boolean checkGlobal;
     private final int historySize;
     private final int globalHistorySize;
+    private final int globalMinLength;
+    private final long globalMaxAgeMs;
     
     public SimilarityFilter(double threshold, boolean checkGlobal) {
+        this(threshold, checkGlobal, 10, 0, 900);
+    }
+    
+    /**
+     * @param globalHistorySize Number of global messages to compare against
+     * @param globalMinLength Normalized messages shorter than this are only compared with the newest 10 global messages
+     * @param globalMaxAgeSeconds Older global messages are forgotten
+     */
+    public SimilarityFilter(double threshold, boolean checkGlobal, int globalHistorySize, int globalMinLength, int globalMaxAgeSeconds) {
         this.threshold = threshold;
         this.checkGlobal = checkGlobal;
         this.historySize = 3;
-        this.globalHistorySize = 10;
+        this.globalHistorySize = globalHistorySize;
+        this.globalMinLength = globalMinLength;
+        this.globalMaxAgeMs = globalMaxAgeSeconds * 1000L;
+        this.globalHistory = newGlobalHistory();
+    }
+    
+    private MinHashIndex newGlobalHistory() {
+        // The newest 10 global messages are always compared directly
+        return new MinHashIndex(globalHistorySize, 10, globalMinLength, globalMaxAgeMs);
+    }
+    
+    private HistoryRing getHistory(UUID playerId) {
+        // Room beyond the compared messages for messages appended before their check,
+        // and for blocked ones that could not give their slot back because of a concurrent append
+        return playerHistory.computeIfAbsent(playerId, k -> new HistoryRing(historySize * 4));
     }
     
     /**
-     * Checks if a message is too similar to recent messages.
+     * Checks if a message is too similar to recent messages, without recording it.
      * @param playerId The player's UUID
      * @param message The message to check
      * @return true if message should be blocked (too similar)
@@ -35,31 +68,52 @@ public class SimilarityFilter {
         String normalized = normalize(message);
         
         // Check player's own history
-        LinkedList<String> history = playerHistory.computeIfAbsent(playerId, k -> new LinkedList<>());
-        synchronized (history) {
-            for (String prev : history) {
-                if (calculateSimilarity(normalized, prev) >= threshold) {
-                    return true;
-                }
-            }
+        HistoryRing history = getHistory(playerId);
+        if (history.anyMatch(normalized, history.nextSequence(), historySize, similarityMatcher)) {
+            return true;
         }
         
         // Check global history if enabled
         if (checkGlobal) {
-            synchronized (globalLock) {
-                for (String prev : globalHistory) {
-                    if (calculateSimilarity(normalized, prev) >= threshold) {
-                        return true;
-                    }
-                }
-            }
+            MinHashIndex global = globalHistory;
+            return global.containsMatch(normalized, global.nextSequence(), System.currentTimeMillis(), similarityMatcher);
         }
         
         return false;
     }
     
     /**
-     * Records a message in history after it passes checks.
+     * Checks a message and records it in one atomic step.
+     * The message is appended first and then compared only with messages appended before it,
+     * so of two identical messages sent at the same moment at most one gets through.
+     * Blocked messages are hidden from later checks again.
+     * @param playerId The player's UUID
+     * @param message The message to check
+     * @return true if message should be blocked (too similar)
+     */
+    public boolean checkAndRecord(UUID playerId, String message) {
+        String normalized = normalize(message);
+        long now = System.currentTimeMillis();
+        
+        HistoryRing history = getHistory(playerId);
+        long sequence = history.append(normalized);
+        MinHashIndex global = checkGlobal ? globalHistory : null;
+        long globalSequence = global != null ? global.add(normalized, now) : -1;
+        
+        boolean similar = history.anyMatch(normalized, sequence, historySize, similarityMatcher)
+            || (global != null && global.containsMatch(normalized, globalSequence, now, similarityMatcher));
+        
+        if (similar) {
+            history.retract(sequence);
+            if (global != null) {
+                global.retract(globalSequence);
+            }
+        }
+        return similar;
+    }
+    
+    /**
+     * Records a message in history without checking it (e.g. for bypassing players).
      * @param playerId The player's UUID
      * @param message The message to record
      */
@@ -67,22 +121,11 @@ public class SimilarityFilter {
         String normalized = normalize(message);
         
         // Add to player history
-        LinkedList<String> history = playerHistory.computeIfAbsent(playerId, k -> new LinkedList<>());
-        synchronized (history) {
-            history.addFirst(normalized);
-            while (history.size() > historySize) {
-                history.removeLast();
-            }
-        }
+        getHistory(playerId).append(normalized);
         
         // Add to global history
         if (checkGlobal) {
-            synchronized (globalLock) {
-                globalHistory.addFirst(normalized);
-                while (globalHistory.size() > globalHistorySize) {
-                    globalHistory.removeLast();
-                }
-            }
+            globalHistory.add(normalized, System.currentTimeMillis());
         }
     }
     
@@ -94,14 +137,44 @@ public class SimilarityFilter {
         playerHistory.remove(playerId);
     }
     
+    /**
+     * Removes a player's history and returns it, for restoring after a reconnect.
+     * @param playerId The player's UUID
+     * @return The history, or null if the player had none
+     */
+    HistoryRing detachPlayer(UUID playerId) {
+        return playerHistory.remove(playerId);
+    }
+    
+    /**
+     * Restores a player's history, unless the player already has one.
+     * @param playerId The player's UUID
+     * @param history A history from {@link #detachPlayer}
+     */
+    void restorePlayer(UUID playerId, HistoryRing history) {
+        playerHistory.putIfAbsent(playerId, history);
+    }
+    
+    /**
+     * Writes the global history for a warm start.
+     */
+    void writeSnapshot(DataOutputStream out, long now) throws IOException {
+        globalHistory.writeTo(out, System.currentTimeMillis());
+    }
+    
+    /**
+     * Restores the global history from a snapshot.
+     */
+    void readSnapshot(DataInputStream in, long base) throws IOException {
+        globalHistory.readFrom(in);
+    }
+    
     /**
      * Clears all history.
      */
     public void clear() {
         playerHistory.clear();
-        synchronized (globalLock) {
-            globalHistory.clear();
-        }
+        globalHistory = newGlobalHistory();
     }
     
     /**
@@ -128,48 +201,52 @@ public class SimilarityFilter {
     }
     
     /**
-     * Calculates similarity between two strings (0.0 to 1.0).
-     * Uses Levenshtein distance ratio.
+     * Checks if two normalized messages reach the similarity threshold.
+     * Only distances up to the largest one the threshold allows are computed.
      */
-    public double calculateSimilarity(String s1, String s2) {
+    private boolean isSimilar(String s1, String s2) {
         if (s1.equals(s2)) {
-            return 1.0;
+            return true;
         }
         if (s1.isEmpty() || s2.isEmpty()) {
-            return 0.0;
+            return threshold <= 0.0;
         }
         
-        int distance = levenshteinDistance(s1, s2);
         int maxLen = Math.max(s1.length(), s2.length());
-        return 1.0 - ((double) distance / maxLen);
+        int maxDistance = maxDistance(maxLen);
+        return maxDistance >= 0 && EditDistance.bounded(s1, s2, maxDistance) <= maxDistance;
     }
     
     /**
-     * Computes Levenshtein (edit) distance between two strings.
+     * Largest edit distance at which two strings of the given maximum length are still similar.
+     * @return The distance, or -1 if no distance is similar enough
      */
-    private int levenshteinDistance(String s1, String s2) {
-        int len1 = s1.length();
-        int len2 = s2.length();
-        
-        // Use two rows instead of full matrix for memory efficiency
-        int[] prev = new int[len2 + 1];
-        int[] curr = new int[len2 + 1];
-        
-        for (int j = 0; j <= len2; j++) {
-            prev[j] = j;
+    private int maxDistance(int maxLen) {
+        int distance = (int) Math.floor((1.0 - threshold) * maxLen);
+        // Correct floating point rounding at the boundary
+        while (distance >= 0 && 1.0 - ((double) distance / maxLen) < threshold) {
+            distance--;
         }
-        
-        for (int i = 1; i <= len1; i++) {
-            curr[0] = i;
-            for (int j = 1; j <= len2; j++) {
-                int cost = (s1.charAt(i - 1) == s2.charAt(j - 1)) ? 0 : 1;
-                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
-            }
-            int[] temp = prev;
-            prev = curr;
-            curr = temp;
+        while (distance < maxLen && 1.0 - ((double) (distance + 1) / maxLen) >= threshold) {
+            distance++;
+        }
+        return distance;
+    }
+    
+    /**
+     * Calculates similarity between two strings (0.0 to 1.0).
+     * Uses Levenshtein distance ratio.
+     */
+    public double calculateSimilarity(String s1, String s2) {
+        if (s1.equals(s2)) {
+            return 1.0;
+        }
+        if (s1.isEmpty() || s2.isEmpty()) {
+            return 0.0;
         }
         
-        return prev[len2];
+        int maxLen = Math.max(s1.length(), s2.length());
+        int distance = EditDistance.bounded(s1, s2, maxLen);
+        return 1.0 - ((double) distance / maxLen);
     }
 }
@@ -0,0 +1,50 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over the last N seconds using one bucket per second.
+ * Buckets are reused in a ring and reset lazily when a new second reaches them.
+ * Lock-free; a count may be off by an event or two at a second boundary, which is fine for telemetry.
+ */
+final class SlidingWindowCounter {
+
+    private final int seconds;
+    private final AtomicLongArray counts;
+    // The second each bucket currently counts
+    private final AtomicLongArray epochs;
+
+    SlidingWindowCounter(int seconds) {
+        this.seconds = Math.max(1, seconds);
+        this.counts = new AtomicLongArray(this.seconds);
+        this.epochs = new AtomicLongArray(this.seconds);
+    }
+
+    /**
+     * Counts one event now.
+     */
+    void increment() {
+        long second = System.currentTimeMillis() / 1000;
+        int index = (int) (second % seconds);
+
+        long epoch = epochs.get(index);
+        if (epoch != second && epochs.compareAndSet(index, epoch, second)) {
+            counts.set(index, 0);
+        }
+        counts.incrementAndGet(index);
+    }
+
+    /**
+     * Gets the number of events in the window.
+     */
+    long sum() {
+        long second = System.currentTimeMillis() / 1000;
+        long total = 0;
+        for (int i = 0; i < seconds; i++) {
+            if (second - epochs.get(i) < seconds) {
+                total += counts.get(i);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,167 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Binary snapshot of GuardDog runtime state, written on shutdown and read on startup,
+ * so rate limits and histories survive a restart.
+ *
+ * The file is a header (magic, version, save time) followed by sections, each tagged with an id
+ * and its length. Sections are independent and are read in parallel. A snapshot from another
+ * version or older than the maximum age is discarded, and unknown sections are skipped.
+ *
+ * Times are written relative to the moment of saving. Readers get the {@code base}: the nanoTime
+ * in this JVM that corresponds to that moment, so time spent offline counts as elapsed.
+ */
+final class StateSnapshot {
+
+    /**
+     * Writes one section.
+     */
+    interface Writer {
+        /**
+         * @param now The nanoTime of the save
+         */
+        void write(DataOutputStream out, long now) throws IOException;
+    }
+
+    /**
+     * Reads one section.
+     */
+    interface Reader {
+        /**
+         * @param base The nanoTime in this JVM that corresponds to the save
+         */
+        void read(DataInputStream in, long base) throws IOException;
+    }
+
+    private record Section(int id, Writer writer, Reader reader) {
+    }
+
+    private static final int MAGIC = 0x47445353; // "GDSS"
+    // Bump when the layout of any section changes
+    private static final int VERSION = 1;
+
+    private final File file;
+    private final Logger logger;
+    private final List<Section> sections = new ArrayList<>();
+
+    StateSnapshot(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+    }
+
+    /**
+     * Adds a section. Ids are stored in the file, so they must never be reused for other data.
+     */
+    StateSnapshot section(int id, Writer writer, Reader reader) {
+        sections.add(new Section(id, writer, reader));
+        return this;
+    }
+
+    /**
+     * Writes all sections through a temp file and an atomic rename.
+     */
+    void save() {
+        long now = System.nanoTime();
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tempFile.toPath()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(sections.size());
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            for (Section section : sections) {
+                buffer.reset();
+                section.writer().write(new DataOutputStream(buffer), now);
+                out.writeInt(section.id());
+                out.writeInt(buffer.size());
+                buffer.writeTo(out);
+            }
+        } catch (IOException e) {
+            logger.warning("[GuardDog] Failed to save state snapshot: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("[GuardDog] Failed to save state snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the snapshot if it is recent enough, then deletes it so it is never applied twice.
+     * @param maxAgeMs Snapshots older than this are discarded
+     * @return true if the snapshot was applied
+     */
+    boolean load(long maxAgeMs) {
+        if (!file.exists()) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            if (data.remaining() < 20 || data.getInt() != MAGIC || data.getInt() != VERSION) {
+                logger.info("[GuardDog] Discarding state snapshot from another version");
+                return false;
+            }
+
+            long ageMs = System.currentTimeMillis() - data.getLong();
+            if (ageMs < 0 || ageMs > maxAgeMs) {
+                logger.info("[GuardDog] Discarding state snapshot from " + TimeUnit.MILLISECONDS.toSeconds(ageMs) + "s ago");
+                return false;
+            }
+            long base = start - TimeUnit.MILLISECONDS.toNanos(ageMs);
+
+            List<CompletableFuture<Void>> reads = new ArrayList<>();
+            int count = data.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = data.getInt();
+                int length = data.getInt();
+                int offset = data.position();
+                data.position(offset + length);
+
+                for (Section section : sections) {
+                    if (section.id() == id) {
+                        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data.array(), offset, length));
+                        reads.add(CompletableFuture.runAsync(() -> {
+                            try {
+                                section.reader().read(in, base);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }));
+                    }
+                }
+            }
+            CompletableFuture.allOf(reads.toArray(new CompletableFuture<?>[0])).join();
+
+            logger.info("[GuardDog] Restored state from " + TimeUnit.MILLISECONDS.toSeconds(ageMs) + "s ago in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("[GuardDog] Failed to load state snapshot: " + e.getMessage());
+            return false;
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Per-session trust state for established players.
+ * A player becomes trusted after a number of messages in a row passed all GuardDog checks,
+ * which implies a verified IP and passed heuristics. Trusted players skip the expensive checks.
+ * Any blocked message revokes trust until the player earns it again.
+ */
+public class TrustTracker {
+
+    private static final AtomicIntegerFieldUpdater<Session> CLEAN_MESSAGES =
+        AtomicIntegerFieldUpdater.newUpdater(Session.class, "cleanMessages");
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+    private final int requiredCleanMessages;
+
+    public TrustTracker(int requiredCleanMessages) {
+        this.requiredCleanMessages = Math.max(1, requiredCleanMessages);
+    }
+
+    /**
+     * Checks if a player is trusted in this session.
+     * @param playerId The player's UUID
+     * @return true if the player may skip the expensive checks
+     */
+    public boolean isTrusted(UUID playerId) {
+        Session session = sessions.get(playerId);
+        return session != null && session.cleanMessages >= requiredCleanMessages;
+    }
+
+    /**
+     * Records a message that passed all checks.
+     * @param playerId The player's UUID
+     */
+    public void recordClean(UUID playerId) {
+        Session session = sessions.computeIfAbsent(playerId, k -> new Session());
+        CLEAN_MESSAGES.getAndUpdate(session, count -> count < requiredCleanMessages ? count + 1 : count);
+    }
+
+    /**
+     * Revokes trust after a violation.
+     * @param playerId The player's UUID
+     */
+    public void revoke(UUID playerId) {
+        Session session = sessions.get(playerId);
+        if (session != null) {
+            session.cleanMessages = 0;
+        }
+    }
+
+    /**
+     * Removes a player's session (on disconnect or permission changes).
+     * @param playerId The player's UUID
+     */
+    public void removePlayer(UUID playerId) {
+        sessions.remove(playerId);
+    }
+
+    private static final class Session {
+        volatile int cleanMessages;
+    }
+}
@@ -0,0 +1,411 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * Verified addresses with their verification time, keyed by the 128-bit IPv6 form of the address.
+ * Entries live in primitive open-addressed segments and are swept once they expire.
+ *
+ * New verifications are appended to a binary log by a background thread, batched with whatever
+ * else arrives within half a second. A snapshot of the live entries periodically replaces the log,
+ * so the files stay as small as the table.
+ */
+final class VerifiedAddressStore {
+
+    private static final int SEGMENTS = 16;
+    private static final int RECORD_BYTES = 24;
+    private static final int SNAPSHOT_MAGIC = 0x47445646; // "GDVF"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long FLUSH_DELAY_MS = 500;
+    private static final long SWEEP_MINUTES = 1;
+    private static final long SNAPSHOT_MINUTES = 10;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long durationMs;
+    private final Logger logger;
+    private final File snapshotFile;
+    private final File logFile;
+    private final File legacyFile;
+
+    // Records waiting for the next log append, three longs each: high, low, time
+    private final Queue<long[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChatCoPlus GuardDog Store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    VerifiedAddressStore(File dataFolder, long durationMs, Logger logger) {
+        this.durationMs = durationMs;
+        this.logger = logger;
+        this.snapshotFile = new File(dataFolder, "guarddog_verified.dat");
+        this.logFile = new File(dataFolder, "guarddog_verified.log");
+        this.legacyFile = new File(dataFolder, "guarddog_verified.yml");
+
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(64);
+        }
+
+        load();
+        executor.scheduleWithFixedDelay(this::sweep, SWEEP_MINUTES, SWEEP_MINUTES, TimeUnit.MINUTES);
+        executor.scheduleWithFixedDelay(this::snapshot, SNAPSHOT_MINUTES, SNAPSHOT_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Checks if an address was verified within the verification duration.
+     * @param high The high 64 bits of the address
+     * @param low The low 64 bits of the address
+     * @param now The current time in milliseconds
+     */
+    boolean isVerified(long high, long low, long now) {
+        long time = get(high, low);
+        return time != 0 && now - time < durationMs;
+    }
+
+    /**
+     * Gets the verification time of an address.
+     * @return The time in milliseconds, or 0 if the address is not in the store
+     */
+    long get(long high, long low) {
+        long hash = hash(high, low);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            return segment.get(high, low, (int) hash);
+        }
+    }
+
+    /**
+     * Records a verification and queues it for the append log.
+     * @param high The high 64 bits of the address
+     * @param low The low 64 bits of the address
+     * @param time The verification time in milliseconds
+     */
+    void put(long high, long low, long time) {
+        long hash = hash(high, low);
+        Segment segment = segment(hash);
+        synchronized (segment) {
+            segment.put(high, low, time, (int) hash);
+        }
+
+        pending.add(new long[] {high, low, time});
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                executor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // Closed, the final snapshot already covers the table
+            }
+        }
+    }
+
+    /**
+     * Removes all entries and replaces the files with an empty snapshot.
+     */
+    void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        pending.clear();
+        try {
+            executor.execute(this::snapshot);
+        } catch (RejectedExecutionException e) {
+            snapshot(); // Closed
+        }
+    }
+
+    /**
+     * Number of entries, including expired ones not swept yet.
+     */
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Writes a final snapshot and stops the background thread.
+     */
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.removeExpired(now, durationMs);
+            }
+        }
+    }
+
+    /**
+     * Appends all pending records to the log in one write.
+     */
+    private void flush() {
+        flushScheduled.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 64);
+        try (FileChannel channel = FileChannel.open(logFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long[] record;
+            while ((record = pending.poll()) != null) {
+                if (buffer.remaining() < RECORD_BYTES) {
+                    write(channel, buffer);
+                }
+                buffer.putLong(record[0]).putLong(record[1]).putLong(record[2]);
+            }
+            write(channel, buffer);
+        } catch (IOException e) {
+            logger.warning("[GuardDog] Failed to append verified IPs: " + e.getMessage());
+        }
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes the live entries to a new snapshot and truncates the log.
+     * Synchronized because close() runs it on the calling thread.
+     */
+    private synchronized void snapshot() {
+        // Entries still pending are already in the table, so the snapshot covers them
+        pending.clear();
+        long now = System.currentTimeMillis();
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                for (Segment segment : segments) {
+                    synchronized (segment) {
+                        for (int i = 0; i < segment.times.length; i++) {
+                            long time = segment.times[i];
+                            if (time != 0 && now - time < durationMs) {
+                                out.writeLong(segment.highs[i]);
+                                out.writeLong(segment.lows[i]);
+                                out.writeLong(time);
+                            }
+                        }
+                    }
+                }
+            }
+            Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.deleteIfExists(logFile.toPath());
+        } catch (IOException e) {
+            logger.warning("[GuardDog] Failed to save verified IPs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the snapshot, replays the log on top of it, and migrates the old YAML file if present.
+     */
+    private void load() {
+        long now = System.currentTimeMillis();
+
+        if (snapshotFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+                if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                    logger.warning("[GuardDog] Ignoring verified IP snapshot with unknown format");
+                } else {
+                    readRecords(in, now);
+                }
+            } catch (IOException e) {
+                logger.warning("[GuardDog] Failed to load verified IP snapshot: " + e.getMessage());
+            }
+        }
+
+        if (logFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
+                readRecords(in, now);
+            } catch (IOException e) {
+                logger.warning("[GuardDog] Failed to load verified IP log: " + e.getMessage());
+            }
+        }
+
+        if (legacyFile.exists()) {
+            migrateLegacy(now);
+        }
+    }
+
+    // Reads records up to the end of the stream; a record cut off by a crash ends the read
+    private void readRecords(DataInputStream in, long now) throws IOException {
+        try {
+            while (true) {
+                long high = in.readLong();
+                long low = in.readLong();
+                long time = in.readLong();
+                if (now - time < durationMs) {
+                    long hash = hash(high, low);
+                    segment(hash).put(high, low, time, (int) hash);
+                }
+            }
+        } catch (EOFException e) {
+            // End of records
+        }
+    }
+
+    private void migrateLegacy(long now) {
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(legacyFile);
+        int migrated = 0;
+
+        // Saved with config.set(ip, time), so the dots of an IPv4 address nest it in sections: walk the leaves
+        for (String ip : config.getKeys(true)) {
+            if (!(config.get(ip) instanceof Number time) || now - time.longValue() >= durationMs) continue;
+
+            // Host addresses may carry an IPv6 scope, which is not part of the address
+            int scope = ip.indexOf('%');
+            String literal = scope < 0 ? ip : ip.substring(0, scope);
+            byte[] bytes = literal.indexOf(':') >= 0 ? PrefixTrie.parseIpv6(literal) : PrefixTrie.parseIpv4(literal);
+            if (bytes == null) continue; // Not an address
+
+            long high = AddressKeys.high(bytes);
+            long low = AddressKeys.low(bytes);
+            long hash = hash(high, low);
+            segment(hash).put(high, low, time.longValue(), (int) hash);
+            migrated++;
+        }
+
+        snapshot();
+        if (legacyFile.renameTo(new File(legacyFile.getPath() + ".migrated"))) {
+            logger.info("[GuardDog] Migrated " + migrated + " verified IPs from " + legacyFile.getName());
+        }
+    }
+
+    private Segment segment(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long hash(long high, long low) {
+        return mix(high * 0x9e3779b97f4a7c15L ^ low);
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Linear probing table. A time of 0 marks a free slot.
+     */
+    private static final class Segment {
+        long[] highs;
+        long[] lows;
+        long[] times;
+        int size;
+
+        Segment(int capacity) {
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            highs = new long[capacity];
+            lows = new long[capacity];
+            times = new long[capacity];
+            size = 0;
+        }
+
+        long get(long high, long low, int hash) {
+            int mask = times.length - 1;
+            for (int i = hash & mask; times[i] != 0; i = (i + 1) & mask) {
+                if (highs[i] == high && lows[i] == low) {
+                    return times[i];
+                }
+            }
+            return 0;
+        }
+
+        void put(long high, long low, long time, int hash) {
+            if (time == 0) return;
+
+            int mask = times.length - 1;
+            int i = hash & mask;
+            for (; times[i] != 0; i = (i + 1) & mask) {
+                if (highs[i] == high && lows[i] == low) {
+                    times[i] = Math.max(times[i], time);
+                    return;
+                }
+            }
+
+            highs[i] = high;
+            lows[i] = low;
+            times[i] = time;
+            if (++size * 4 > times.length * 3) {
+                rehash(times.length * 2, 0, 0);
+            }
+        }
+
+        void removeExpired(long now, long durationMs) {
+            rehash(times.length, now, durationMs);
+        }
+
+        void clear() {
+            allocate(64);
+        }
+
+        /**
+         * Rebuilds the table at the given capacity, dropping entries expired at {@code now}.
+         * A {@code now} of 0 keeps every entry.
+         */
+        private void rehash(int capacity, long now, long durationMs) {
+            long[] oldHighs = highs;
+            long[] oldLows = lows;
+            long[] oldTimes = times;
+            allocate(capacity);
+
+            for (int i = 0; i < oldTimes.length; i++) {
+                long time = oldTimes[i];
+                if (time != 0 && (now == 0 || now - time < durationMs)) {
+                    put(oldHighs[i], oldLows[i], time, (int) hash(oldHighs[i], oldLows[i]));
+                }
+            }
+        }
+    }
+}
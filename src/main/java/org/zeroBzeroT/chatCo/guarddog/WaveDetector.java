@@ -0,0 +1,199 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Detects spam waves: the same or templated text posted by many different accounts,
+ * each of which stays under its own rate limit.
+ *
+ * Messages are reduced to a fingerprint of their letters and counted per distinct sender
+ * in a count-min sketch. All counters are halved every window, so counts follow recent traffic.
+ * Once a fingerprint's estimate reaches the configured number of senders it is blocked for everyone.
+ * Memory is fixed: the sketch, the sender dedupe table and the heavy-hitter list never grow.
+ */
+public class WaveDetector {
+
+    /**
+     * A fingerprint with a high estimated sender count.
+     * @param fingerprint The message fingerprint
+     * @param sample The first message seen with this fingerprint
+     * @param senders Estimated number of distinct senders in the recent window
+     */
+    public record Wave(long fingerprint, String sample, int senders) {
+    }
+
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 4096;
+    private static final int DEDUPE_SIZE = 1 << 14;
+    private static final int TOP_SIZE = 10;
+
+    private final AtomicIntegerArray sketch = new AtomicIntegerArray(DEPTH * WIDTH);
+    // Hashes of recent (sender, fingerprint) pairs, so one sender repeating a message counts once
+    private final AtomicLongArray recentPairs = new AtomicLongArray(DEDUPE_SIZE);
+    private final List<Wave> topWaves = new ArrayList<>(TOP_SIZE + 1);
+    private final AtomicLong lastDecay = new AtomicLong(System.nanoTime());
+
+    private final int maxSenders;
+    private final int minLength;
+    private final long windowNs;
+
+    public WaveDetector(int maxSenders, int windowSeconds, int minLength) {
+        this.maxSenders = maxSenders;
+        this.minLength = minLength;
+        this.windowNs = TimeUnit.SECONDS.toNanos(windowSeconds);
+    }
+
+    /**
+     * Counts a message and checks if it belongs to a wave.
+     * @param senderId The sender's UUID
+     * @param message The message
+     * @return true if the message's fingerprint is posted by too many senders
+     */
+    public boolean recordAndCheck(UUID senderId, String message) {
+        long fingerprint = fingerprint(message);
+        if (fingerprint == 0) {
+            return false; // Too short to tell apart from normal chat ("gg", "lol")
+        }
+
+        decayIfDue();
+
+        long pair = mix(fingerprint ^ senderId.getMostSignificantBits() * 31 ^ senderId.getLeastSignificantBits());
+        int slot = (int) pair & (DEDUPE_SIZE - 1);
+        boolean newSender = recentPairs.getAndSet(slot, pair) != pair;
+
+        int estimate = newSender ? increment(fingerprint) : estimate(fingerprint);
+        if (newSender && estimate * 2 >= maxSenders) {
+            updateTopWaves(fingerprint, message, estimate);
+        }
+        return estimate >= maxSenders;
+    }
+
+    /**
+     * Gets the fingerprints with the highest estimated sender counts.
+     * @return The waves, highest count first
+     */
+    public List<Wave> getTopWaves() {
+        synchronized (topWaves) {
+            return new ArrayList<>(topWaves);
+        }
+    }
+
+    /**
+     * Number of distinct senders at which a fingerprint is blocked.
+     */
+    public int getMaxSenders() {
+        return maxSenders;
+    }
+
+    // Conservative update: only the smallest counters are raised, which keeps overestimates low
+    private int increment(long fingerprint) {
+        int min = estimate(fingerprint);
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(fingerprint, row);
+            int current = sketch.get(index);
+            while (current <= min && !sketch.compareAndSet(index, current, min + 1)) {
+                current = sketch.get(index);
+            }
+        }
+        return min + 1;
+    }
+
+    private int estimate(long fingerprint) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, sketch.get(index(fingerprint, row)));
+        }
+        return min;
+    }
+
+    private static int index(long fingerprint, int row) {
+        return row * WIDTH + ((int) mix(fingerprint + row * 0x9E3779B97F4A7C15L) & (WIDTH - 1));
+    }
+
+    private void updateTopWaves(long fingerprint, String message, int senders) {
+        synchronized (topWaves) {
+            for (int i = 0; i < topWaves.size(); i++) {
+                Wave wave = topWaves.get(i);
+                if (wave.fingerprint() == fingerprint) {
+                    topWaves.set(i, new Wave(fingerprint, wave.sample(), Math.max(senders, wave.senders())));
+                    topWaves.sort((a, b) -> Integer.compare(b.senders(), a.senders()));
+                    return;
+                }
+            }
+
+            topWaves.add(new Wave(fingerprint, message, senders));
+            topWaves.sort((a, b) -> Integer.compare(b.senders(), a.senders()));
+            if (topWaves.size() > TOP_SIZE) {
+                topWaves.remove(TOP_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Halves all counters once per window. Runs inline on whichever thread notices first.
+     */
+    private void decayIfDue() {
+        long now = System.nanoTime();
+        long last = lastDecay.get();
+        if (now - last < windowNs || !lastDecay.compareAndSet(last, now)) {
+            return;
+        }
+
+        for (int i = 0; i < DEPTH * WIDTH; i++) {
+            sketch.getAndUpdate(i, count -> count >>> 1);
+        }
+        for (int i = 0; i < DEDUPE_SIZE; i++) {
+            recentPairs.set(i, 0);
+        }
+
+        synchronized (topWaves) {
+            topWaves.replaceAll(wave -> new Wave(wave.fingerprint(), wave.sample(), wave.senders() >>> 1));
+            topWaves.removeIf(wave -> wave.senders() == 0);
+        }
+    }
+
+    /**
+     * Hashes the letters of a message, lowercased.
+     * Spaces, digits, punctuation and color codes are ignored, so templated variants with
+     * random numbers or symbols collide.
+     * @return The fingerprint, or 0 if the message has fewer letters than the minimum length
+     */
+    private long fingerprint(String message) {
+        long hash = 0xcbf29ce484222325L;
+        int letters = 0;
+
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '§') {
+                i++; // Skip the color code
+                continue;
+            }
+
+            c = Character.toLowerCase(c);
+            if (Character.isLetter(c)) {
+                hash = (hash ^ c) * 0x100000001b3L;
+                letters++;
+            }
+        }
+
+        if (letters < minLength) {
+            return 0;
+        }
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,83 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class EditDistanceTest {
+
+    @Test
+    void matchesDynamicProgrammingOnRandomPairs() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 100_000; i++) {
+            // Small alphabets give close pairs, lengths cross the 64 and 128 character block borders
+            int alphabet = 2 + random.nextInt(random.nextBoolean() ? 4 : 60);
+            String a = randomText(random, random.nextInt(200), alphabet);
+            String b = random.nextInt(4) == 0 ? mutate(random, a, alphabet) : randomText(random, random.nextInt(200), alphabet);
+            int maxDistance = random.nextInt(Math.max(a.length(), b.length()) + 2) - 1;
+
+            int expected = levenshteinDistance(a, b);
+            int bound = maxDistance < 0 ? 0 : Math.min(expected, maxDistance + 1);
+            assertEquals(bound, EditDistance.bounded(a, b, maxDistance), () -> "\"" + a + "\" vs \"" + b + "\" bound " + maxDistance);
+        }
+    }
+
+    @Test
+    void handlesCharactersOutsideThePattern() {
+        assertEquals(3, EditDistance.bounded("abc", "xyz", 10));
+        assertEquals(1, EditDistance.bounded("héllo", "hello", 10));
+        assertEquals(5, EditDistance.bounded("", "hello", 10));
+        assertEquals(3, EditDistance.bounded("", "hello", 2));
+    }
+
+    private static String randomText(Random random, int length, int alphabet) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(alphabet));
+        }
+        return new String(chars);
+    }
+
+    private static String mutate(Random random, String text, int alphabet) {
+        StringBuilder builder = new StringBuilder(text);
+        int edits = random.nextInt(8);
+        for (int i = 0; i < edits; i++) {
+            int at = random.nextInt(builder.length() + 1);
+            char c = (char) ('a' + random.nextInt(alphabet));
+            switch (random.nextInt(3)) {
+                case 0 -> builder.insert(at, c);
+                case 1 -> {
+                    if (at < builder.length()) builder.deleteCharAt(at);
+                }
+                default -> {
+                    if (at < builder.length()) builder.setCharAt(at, c);
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    // The two-row DP the bit-parallel distance replaced
+    private static int levenshteinDistance(String s1, String s2) {
+        int[] prev = new int[s2.length() + 1];
+        int[] curr = new int[s2.length() + 1];
+
+        for (int j = 0; j <= s2.length(); j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            curr[0] = i;
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1), prev[j - 1] + cost);
+            }
+            int[] temp = prev;
+            prev = curr;
+            curr = temp;
+        }
+        return prev[s2.length()];
+    }
+}
@@ -0,0 +1,66 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.jupiter.api.Test;
+
+class PrefixTrieTest {
+
+    @Test
+    void parsesLiteralsLikeInetAddress() throws Exception {
+        String[] literals = {
+            "0.0.0.0", "10.0.0.1", "255.255.255.255", "192.168.010.1",
+            "::", "::1", "1::", "2001:db8::", "2001:db8::8a2e:370:7334", "fe80::1:2:3:4:5:6",
+            "2001:0db8:85a3:0000:0000:8a2e:0370:7334", "1:2:3:4:5:6:7::", "::ffff:10.0.0.1", "64:ff9b::192.0.2.33"
+        };
+        for (String literal : literals) {
+            // Compared in the 128-bit form, since InetAddress turns IPv4-mapped literals into IPv4 addresses
+            byte[] expected = InetAddress.getByName(literal).getAddress();
+            byte[] actual = literal.indexOf(':') >= 0 ? PrefixTrie.parseIpv6(literal) : PrefixTrie.parseIpv4(literal);
+            assertNotNull(actual, literal);
+            assertEquals(AddressKeys.high(expected), AddressKeys.high(actual), literal);
+            assertEquals(AddressKeys.low(expected), AddressKeys.low(actual), literal);
+        }
+    }
+
+    @Test
+    void rejectsAnythingElse() {
+        String[] invalid = {
+            "999.1.1.1", "1.2.3", "1.2.3.4.5", "1..2.3", "1.2.3.", "+1.2.3.4", " 1.2.3.4", "1.2.3.0x4", "1.2.3.٤",
+            "localhost", "example.org", "",
+            ":::", "1::2::3", "12345::", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8::", "g::1",
+            "1.2.3.4::", "::1.2.3", "::1.2.3.4:5", "fe80::1%eth0"
+        };
+        for (String text : invalid) {
+            byte[] bytes = text.indexOf(':') >= 0 ? PrefixTrie.parseIpv6(text) : PrefixTrie.parseIpv4(text);
+            assertNull(bytes, text);
+        }
+    }
+
+    @Test
+    void insertsNetworksAndRejectsBadPrefixes() {
+        PrefixTrie trie = new PrefixTrie();
+        assertTrue(trie.insert("10.0.0.0/8", PrefixTrie.DENY));
+        assertTrue(trie.insert("10.1.0.0/16", PrefixTrie.ALLOW));
+        assertTrue(trie.insert("2001:db8::/32", PrefixTrie.DENY));
+        assertFalse(trie.insert("10.0.0.0/33", PrefixTrie.DENY));
+        assertFalse(trie.insert("10.0.0.0/+8", PrefixTrie.DENY));
+        assertFalse(trie.insert("999.1.1.1", PrefixTrie.DENY));
+
+        assertEquals(PrefixTrie.DENY, lookup(trie, "10.2.3.4"));
+        assertEquals(PrefixTrie.ALLOW, lookup(trie, "10.1.3.4"));
+        assertEquals(PrefixTrie.DENY, lookup(trie, "2001:db8::1"));
+        assertEquals(PrefixTrie.NONE, lookup(trie, "11.0.0.1"));
+    }
+
+    private static byte lookup(PrefixTrie trie, String address) {
+        byte[] bytes = address.indexOf(':') >= 0 ? PrefixTrie.parseIpv6(address) : PrefixTrie.parseIpv4(address);
+        return trie.lookup(AddressKeys.high(bytes), AddressKeys.low(bytes));
+    }
+}
@@ -0,0 +1,30 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class ReconnectCacheTest {
+
+    @Test
+    void accountsOnOneAddressGetTheirOwnHistory() {
+        ReconnectCache cache = new ReconnectCache(16, 600);
+        HistoryRing history = new HistoryRing(12);
+        history.append("hello there");
+        cache.put(UUID.randomUUID(), 42, new ReconnectCache.State(0, 0, history, System.nanoTime()));
+
+        HistoryRing first = cache.take(UUID.randomUUID(), 42).history();
+        HistoryRing second = cache.take(UUID.randomUUID(), 42).history();
+        assertNotSame(first, second);
+        assertNotSame(history, first);
+
+        // Both inherit the departed player's messages, but not each other's
+        assertTrue(second.anyMatch("hello there", second.nextSequence(), 3, String::equals));
+        first.append("only the first account said this");
+        assertFalse(second.anyMatch("only the first account said this", second.nextSequence(), 3, String::equals));
+    }
+}
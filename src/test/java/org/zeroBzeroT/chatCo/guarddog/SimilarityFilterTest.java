@@ -0,0 +1,75 @@
+package org.zeroBzeroT.chatCo.guarddog;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+class SimilarityFilterTest {
+
+    @Test
+    void repeatedMessageIsBlockedEveryTimeWithoutGlobalChecks() {
+        SimilarityFilter filter = new SimilarityFilter(0.85, false);
+        UUID player = UUID.randomUUID();
+
+        assertFalse(filter.checkAndRecord(player, "buy cheap diamonds now"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(filter.checkAndRecord(player, "buy cheap diamonds now"), "repeat " + (i + 1));
+        }
+    }
+
+    @Test
+    void repeatedMessageFromManyAccountsIsBlockedEveryTime() {
+        SimilarityFilter filter = new SimilarityFilter(0.85, true, 5000, 12, 900);
+
+        assertFalse(filter.checkAndRecord(UUID.randomUUID(), "gg"));
+        for (int i = 0; i < 30; i++) {
+            assertTrue(filter.checkAndRecord(UUID.randomUUID(), "gg"), "account " + (i + 1));
+        }
+    }
+
+    @Test
+    void blockedCopiesDoNotHideTheOriginalFromOlderLookups() {
+        SimilarityFilter filter = new SimilarityFilter(0.85, true, 5000, 12, 900);
+        String advert = "join my server at example dot org for free diamonds";
+        assertFalse(filter.checkAndRecord(UUID.randomUUID(), advert));
+
+        // Copies fill the bucket chains, and unrelated messages push the original out of the newest 10
+        Random random = new Random(5);
+        for (int i = 0; i < 60; i++) {
+            assertTrue(filter.checkAndRecord(UUID.randomUUID(), advert), "copy " + (i + 1));
+        }
+        for (int i = 0; i < 20; i++) {
+            filter.checkAndRecord(UUID.randomUUID(), randomText(random, 40));
+        }
+
+        assertTrue(filter.checkAndRecord(UUID.randomUUID(), advert));
+    }
+
+    @Test
+    void shortRepliesAreOnlyComparedWithRecentGlobalMessages() {
+        SimilarityFilter filter = new SimilarityFilter(0.85, true, 5000, 12, 900);
+        String advert = "join my server at example dot org for free diamonds";
+        assertFalse(filter.checkAndRecord(UUID.randomUUID(), "gg"));
+        assertFalse(filter.checkAndRecord(UUID.randomUUID(), advert));
+
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            filter.checkAndRecord(UUID.randomUUID(), randomText(random, 40));
+        }
+
+        assertFalse(filter.checkAndRecord(UUID.randomUUID(), "gg"));
+        assertTrue(filter.checkAndRecord(UUID.randomUUID(), advert));
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}